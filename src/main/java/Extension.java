@@ -1,9 +1,15 @@
 import burp.api.montoya.BurpExtension;
 import burp.api.montoya.MontoyaApi;
+import core.HistoryStore;
 import core.LLMProviderRegistry;
 import providers.ClaudeLLMProvider;
+import ui.HistorySearchTab;
 import ui.LLMRequestEditorProvider;
 import ui.LLMResponseEditorProvider;
+import ui.ParseScheduler;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
 
 public class Extension implements BurpExtension {
     @Override
@@ -25,5 +31,18 @@ public class Extension implements BurpExtension {
 
         montoyaApi.userInterface().registerHttpRequestEditorProvider(requestProvider);
         montoyaApi.userInterface().registerHttpResponseEditorProvider(responseProvider);
+
+        // Searchable index of the LLM traffic in the proxy history
+        // The API doesn't expose the project file's location, so the index is keyed by project id
+        Path indexFile = Paths.get(System.getProperty("user.home"), ".llm-burp", montoyaApi.project().id() + ".index");
+        HistorySearchTab historyTab = new HistorySearchTab(montoyaApi.proxy()::history, new HistoryStore(indexFile));
+        montoyaApi.userInterface().registerSuiteTab("LLM History", historyTab.getComponent());
+        historyTab.start();
+
+        // Stop background parsing and indexing when the extension is unloaded
+        montoyaApi.extension().registerUnloadingHandler(() -> {
+            ParseScheduler.shutdown();
+            historyTab.shutdown();
+        });
     }
 }
\ No newline at end of file
@@ -36,6 +36,8 @@ public class ConversationMessage {
 
     private final Role role;
     private final List<ContentItem> contentItems;
+    private long contentHash;
+    private Usage usage;
 
     public ConversationMessage(Role role) {
         this.role = role;
@@ -62,4 +64,27 @@ public class ConversationMessage {
     public boolean hasContent() {
         return !contentItems.isEmpty();
     }
+
+    /**
+     * Returns a hash of the source the message was parsed from, or 0 if unknown.
+     * Messages with the same non-zero hash have the same content.
+     */
+    public long getContentHash() {
+        return contentHash;
+    }
+
+    public void setContentHash(long contentHash) {
+        this.contentHash = contentHash;
+    }
+
+    /**
+     * Returns the token usage reported with a response message, or null if there is none.
+     */
+    public Usage getUsage() {
+        return usage;
+    }
+
+    public void setUsage(Usage usage) {
+        this.usage = usage;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,83 @@
+package core;
+
+import burp.api.montoya.core.ByteArray;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * Fast non-cryptographic 64-bit hashing for message bodies and content slices.
+ */
+public final class Hashing {
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private static final long P1 = 0x9E3779B185EBCA87L;
+    private static final long P2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long P3 = 0x165667B19E3779F9L;
+    private static final long P4 = 0x85EBCA77C2B2AE63L;
+
+    // Bytes sampled from each end of a body when fingerprinting
+    private static final int FINGERPRINT_WINDOW = 4096;
+
+    private Hashing() {
+    }
+
+    public static long hash64(byte[] data) {
+        return hash64(data, 0, data.length);
+    }
+
+    /**
+     * Hashes a byte range, eight bytes at a time.
+     */
+    public static long hash64(byte[] data, int offset, int length) {
+        long h = P3 + length * P1;
+        int i = offset;
+        int end = offset + length;
+
+        for (; i + 8 <= end; i += 8) {
+            long k = (long) LONGS.get(data, i);
+            k *= P2;
+            k = Long.rotateLeft(k, 31);
+            k *= P1;
+            h ^= k;
+            h = Long.rotateLeft(h, 27) * P1 + P4;
+        }
+        for (; i < end; i++) {
+            h ^= (data[i] & 0xFFL) * P3;
+            h = Long.rotateLeft(h, 11) * P1;
+        }
+
+        return mix(h);
+    }
+
+    /**
+     * Folds a value into a running hash, e.g. to build prefix hashes over a sequence.
+     */
+    public static long combine(long hash, long value) {
+        return mix(hash * P1 + value + P4);
+    }
+
+    /**
+     * Cheap identity fingerprint of a Montoya body: its length plus hashes of the first and
+     * last few kilobytes. Only those windows are copied out of the body.
+     */
+    public static long fingerprint(ByteArray body) {
+        int length = body.length();
+        if (length <= 2 * FINGERPRINT_WINDOW) {
+            return hash64(body.getBytes());
+        }
+        long head = hash64(body.subArray(0, FINGERPRINT_WINDOW).getBytes());
+        long tail = hash64(body.subArray(length - FINGERPRINT_WINDOW, length).getBytes());
+        return combine(combine(head, tail), length);
+    }
+
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= P2;
+        h ^= h >>> 29;
+        h *= P3;
+        h ^= h >>> 32;
+        return h;
+    }
+}
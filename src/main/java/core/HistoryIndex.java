@@ -0,0 +1,307 @@
+package core;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * In-memory inverted index over the messages of many history items.
+ * Messages are identified by content hash and indexed once however many requests repeat them;
+ * each keeps the sorted ids of the items it appears in. Terms map to the sorted ids of the
+ * messages containing them. All postings are primitive int arrays.
+ * Queries match messages that contain every term of the query. Thread-safe.
+ */
+public class HistoryIndex {
+    // Tokens outside this length range are not indexed
+    private static final int MIN_TERM_LENGTH = 2;
+    private static final int MAX_TERM_LENGTH = 64;
+    // Characters of each message kept to show in results
+    private static final int PREVIEW_LENGTH = 160;
+
+    private final Map<String, IntList> messagesByTerm = new HashMap<>();
+    private final Map<Long, Integer> messageIds = new HashMap<>();
+    private final List<IntList> itemsByMessage = new ArrayList<>();
+    private final List<Long> hashes = new ArrayList<>();
+    private final List<ConversationMessage.Role> roles = new ArrayList<>();
+    private final List<String> previews = new ArrayList<>();
+    private int itemCount;
+
+    /**
+     * Adds a history item's messages. Items must be added in increasing id order.
+     * Messages with hash 0 are not indexed, since they can't be recognized again.
+     */
+    public synchronized void addItem(int item, List<ConversationMessage> messages) {
+        for (ConversationMessage message : messages) {
+            long hash = message.getContentHash();
+            if (hash == 0) continue;
+
+            Integer id = messageIds.get(hash);
+            if (id == null) {
+                id = indexMessage(message);
+                messageIds.put(hash, id);
+            }
+
+            IntList items = itemsByMessage.get(id);
+            if (items.size == 0 || items.last() != item) {
+                items.add(item);
+            }
+        }
+        itemCount++;
+    }
+
+    /**
+     * Returns the messages containing every term of the query, most recently seen first.
+     */
+    public synchronized List<Hit> search(String query, int limit) {
+        List<Hit> hits = new ArrayList<>();
+
+        int[] result = null;
+        for (String term : tokenize(query)) {
+            IntList postings = messagesByTerm.get(term);
+            if (postings == null) {
+                return hits;
+            }
+            result = result == null ? postings.toArray() : intersect(result, postings);
+            if (result.length == 0) {
+                return hits;
+            }
+        }
+        if (result == null) {
+            return hits;
+        }
+
+        for (int id : result) {
+            IntList items = itemsByMessage.get(id);
+            hits.add(new Hit(items.last(), items.size, hashes.get(id), roles.get(id), previews.get(id)));
+        }
+        hits.sort((a, b) -> Integer.compare(b.item, a.item));
+        return hits.size() > limit ? new ArrayList<>(hits.subList(0, limit)) : hits;
+    }
+
+    public synchronized int getItemCount() {
+        return itemCount;
+    }
+
+    public synchronized int getMessageCount() {
+        return itemsByMessage.size();
+    }
+
+    public synchronized int getTermCount() {
+        return messagesByTerm.size();
+    }
+
+    /**
+     * Writes the index in the format read by {@link #read(ByteBuffer)}. The index is copied under
+     * the lock and written outside it, so searches don't wait for the disk.
+     */
+    public void write(DataOutputStream out) throws IOException {
+        int items;
+        long[] messageHashes;
+        ConversationMessage.Role[] messageRoles;
+        String[] messagePreviews;
+        int[][] messageItems;
+        String[] terms;
+        int[][] termMessages;
+
+        synchronized (this) {
+            items = itemCount;
+            int messageCount = itemsByMessage.size();
+            messageHashes = new long[messageCount];
+            messageRoles = roles.toArray(new ConversationMessage.Role[0]);
+            messagePreviews = previews.toArray(new String[0]);
+            messageItems = new int[messageCount][];
+            for (int id = 0; id < messageCount; id++) {
+                messageHashes[id] = hashes.get(id);
+                messageItems[id] = itemsByMessage.get(id).toArray();
+            }
+
+            terms = new String[messagesByTerm.size()];
+            termMessages = new int[terms.length][];
+            int i = 0;
+            for (Map.Entry<String, IntList> entry : messagesByTerm.entrySet()) {
+                terms[i] = entry.getKey();
+                termMessages[i++] = entry.getValue().toArray();
+            }
+        }
+
+        out.writeInt(items);
+        out.writeInt(messageHashes.length);
+        for (int id = 0; id < messageHashes.length; id++) {
+            out.writeLong(messageHashes[id]);
+            out.writeByte(messageRoles[id].ordinal());
+            HistoryStore.writeString(out, messagePreviews[id]);
+            HistoryStore.writeInts(out, messageItems[id]);
+        }
+
+        out.writeInt(terms.length);
+        for (int i = 0; i < terms.length; i++) {
+            HistoryStore.writeString(out, terms[i]);
+            HistoryStore.writeInts(out, termMessages[i]);
+        }
+    }
+
+    /**
+     * Replaces the contents of the index with those written by {@link #write(DataOutputStream)}.
+     */
+    public synchronized void read(ByteBuffer in) {
+        clear();
+        ConversationMessage.Role[] roleValues = ConversationMessage.Role.values();
+
+        itemCount = in.getInt();
+        int messageCount = in.getInt();
+        for (int id = 0; id < messageCount; id++) {
+            long hash = in.getLong();
+            hashes.add(hash);
+            messageIds.put(hash, id);
+            roles.add(roleValues[in.get()]);
+            previews.add(HistoryStore.readString(in));
+            itemsByMessage.add(new IntList(HistoryStore.readInts(in)));
+        }
+
+        int termCount = in.getInt();
+        for (int i = 0; i < termCount; i++) {
+            String term = HistoryStore.readString(in);
+            messagesByTerm.put(term, new IntList(HistoryStore.readInts(in)));
+        }
+    }
+
+    public synchronized void clear() {
+        messagesByTerm.clear();
+        messageIds.clear();
+        itemsByMessage.clear();
+        hashes.clear();
+        roles.clear();
+        previews.clear();
+        itemCount = 0;
+    }
+
+    private int indexMessage(ConversationMessage message) {
+        int id = itemsByMessage.size();
+        itemsByMessage.add(new IntList());
+        hashes.add(message.getContentHash());
+        roles.add(message.getRole());
+
+        StringBuilder preview = new StringBuilder();
+        Set<String> terms = new HashSet<>();
+        for (ContentItem item : message.getContentItems()) {
+            String text = item.getDisplayText();
+            if (text == null) continue;
+
+            terms.addAll(tokenize(text));
+            if (preview.length() < PREVIEW_LENGTH) {
+                if (preview.length() > 0) {
+                    preview.append(' ');
+                }
+                preview.append(text, 0, Math.min(text.length(), PREVIEW_LENGTH - preview.length()));
+            }
+        }
+        previews.add(preview.toString().replaceAll("\\s+", " "));
+
+        for (String term : terms) {
+            messagesByTerm.computeIfAbsent(term, t -> new IntList()).add(id);
+        }
+        return id;
+    }
+
+    /**
+     * Splits text into lowercase runs of letters, digits and underscores.
+     */
+    private static Set<String> tokenize(String text) {
+        Set<String> terms = new HashSet<>();
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && isWordChar(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                int length = i - start;
+                if (length >= MIN_TERM_LENGTH && length <= MAX_TERM_LENGTH) {
+                    terms.add(text.substring(start, i).toLowerCase());
+                }
+                start = -1;
+            }
+        }
+        return terms;
+    }
+
+    private static boolean isWordChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_';
+    }
+
+    private static int[] intersect(int[] a, IntList b) {
+        int[] result = new int[Math.min(a.length, b.size)];
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.length && j < b.size) {
+            if (a[i] < b.values[j]) {
+                i++;
+            } else if (a[i] > b.values[j]) {
+                j++;
+            } else {
+                result[count++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    /**
+     * A matching message: the most recent item it appears in and how many items contain it.
+     */
+    public static class Hit {
+        public final int item;
+        public final int itemCount;
+        public final long contentHash;
+        public final ConversationMessage.Role role;
+        public final String preview;
+
+        public Hit(int item, int itemCount, long contentHash, ConversationMessage.Role role, String preview) {
+            this.item = item;
+            this.itemCount = itemCount;
+            this.contentHash = contentHash;
+            this.role = role;
+            this.preview = preview;
+        }
+    }
+
+    /**
+     * Growable array of ints in increasing order.
+     */
+    private static class IntList {
+        public int[] values;
+        public int size;
+
+        public IntList() {
+            this.values = new int[2];
+        }
+
+        public IntList(int[] values) {
+            this.values = values.length > 0 ? values : new int[2];
+            this.size = values.length;
+        }
+
+        public void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        public int last() {
+            return values[size - 1];
+        }
+
+        public int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package core;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * On-disk copy of a project's history index, sessions, usage totals and latency statistics,
+ * so they survive restarts without parsing the history again. The file records a hash of each indexed item's
+ * request body; a saved index is only reused if those still match the items in the history.
+ * Files are memory-mapped to load. A mapped file can't be replaced or deleted on Windows until the
+ * mapping is garbage collected, so each save writes a new generation next to the base path
+ * (index.1, index.2, ...) and the older generations are deleted once that succeeds.
+ */
+public class HistoryStore {
+    private static final int MAGIC = 0x4C4C4D49;
+    // Bump when the format changes; files of other versions are ignored and rebuilt
+    private static final int VERSION = 3;
+
+    // Base path; the generations are saved next to it with a numeric suffix
+    private final Path file;
+
+    public HistoryStore(Path file) {
+        this.file = file;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Loads the saved index, sessions and statistics into the given ones and returns the body
+     * hashes of the items they cover, in item order. Returns null and leaves them all empty if
+     * there is no usable file.
+     */
+    public long[] load(HistoryIndex index, SessionBuilder sessions, UsageTotals usage, LatencyStats latency) {
+        long generation = latestGeneration();
+        if (generation == 0) {
+            return null;
+        }
+
+        try (FileChannel channel = FileChannel.open(generationFile(generation), StandardOpenOption.READ)) {
+            MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (in.getInt() != MAGIC || in.getInt() != VERSION) {
+                return null;
+            }
+
+            long[] bodyHashes = new long[in.getInt()];
+            in.asLongBuffer().get(bodyHashes);
+            in.position(in.position() + bodyHashes.length * Long.BYTES);
+
+            index.read(in);
+            sessions.read(in);
+            usage.read(in);
+            latency.read(in);
+            return bodyHashes;
+        } catch (IOException | RuntimeException e) {
+            // Unreadable or truncated file; it is rebuilt from the history
+            index.clear();
+            sessions.clear();
+            usage.clear();
+            latency.clear();
+            return null;
+        }
+    }
+
+    /**
+     * Saves the index, sessions and statistics, which cover the items with the given body hashes.
+     */
+    public void save(long[] bodyHashes, HistoryIndex index, SessionBuilder sessions, UsageTotals usage,
+                     LatencyStats latency) throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(bodyHashes.length);
+            for (long hash : bodyHashes) {
+                out.writeLong(hash);
+            }
+            index.write(out);
+            sessions.write(out);
+            usage.write(out);
+            latency.write(out);
+        }
+
+        // A new name is never mapped, so the move can't fail on a file that is still in use
+        long generation = latestGeneration() + 1;
+        Files.move(temporary, generationFile(generation), StandardCopyOption.ATOMIC_MOVE);
+        deleteGenerationsBefore(generation);
+    }
+
+    private Path generationFile(long generation) {
+        return file.resolveSibling(file.getFileName() + "." + generation);
+    }
+
+    /**
+     * Returns the generation of the newest saved file, or 0 if there is none.
+     */
+    private long latestGeneration() {
+        long latest = 0;
+        for (long generation : generations()) {
+            latest = Math.max(latest, generation);
+        }
+        return latest;
+    }
+
+    /**
+     * Deletes the generations older than the given one. Files that are still mapped can't be deleted
+     * on Windows; they are tried again after the next save.
+     */
+    private void deleteGenerationsBefore(long generation) {
+        for (long older : generations()) {
+            if (older < generation) {
+                try {
+                    Files.deleteIfExists(generationFile(older));
+                } catch (IOException e) {
+                    // Still in use
+                }
+            }
+        }
+    }
+
+    private List<Long> generations() {
+        List<Long> generations = new ArrayList<>();
+        Path directory = file.toAbsolutePath().getParent();
+        if (!Files.isDirectory(directory)) {
+            return generations;
+        }
+
+        String prefix = file.getFileName() + ".";
+        try (DirectoryStream<Path> paths = Files.newDirectoryStream(directory, prefix + "*")) {
+            for (Path path : paths) {
+                String suffix = path.getFileName().toString().substring(prefix.length());
+                if (!suffix.isEmpty() && suffix.length() < 19 && suffix.chars().allMatch(Character::isDigit)) {
+                    generations.add(Long.parseLong(suffix));
+                }
+            }
+        } catch (IOException e) {
+            // Treated as having no saved files
+        }
+        return generations;
+    }
+
+    static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(ByteBuffer in) {
+        byte[] bytes = new byte[in.getInt()];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static void writeInts(DataOutputStream out, int[] values) throws IOException {
+        out.writeInt(values.length);
+        for (int value : values) {
+            out.writeInt(value);
+        }
+    }
+
+    static int[] readInts(ByteBuffer in) {
+        int[] values = new int[in.getInt()];
+        in.asIntBuffer().get(values);
+        in.position(in.position() + values.length * Integer.BYTES);
+        return values;
+    }
+}
@@ -0,0 +1,149 @@
+package core;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Shared pool of large immutable parse results, such as system prompts and tool definitions,
+ * keyed by a hash of the bytes they were parsed from. Parsers look a value up before parsing it
+ * and intern what they parse, so requests that repeat the same bytes share one instance.
+ * Values are only weakly referenced and go away once no cached parse uses them.
+ */
+public class InternPool {
+    private static final InternPool INSTANCE = new InternPool();
+
+    private final Map<Key, ValueReference> entries = new HashMap<>();
+    private final ReferenceQueue<Object> collected = new ReferenceQueue<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong savedBytes = new AtomicLong();
+
+    public static InternPool getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Returns the value interned for the given source bytes, or null if there is none.
+     */
+    public <T> T get(Class<T> type, long hash, int length) {
+        Key key = new Key(type, hash, length);
+        synchronized (entries) {
+            purge();
+            ValueReference reference = entries.get(key);
+            Object value = reference != null ? reference.get() : null;
+            if (value != null) {
+                hits.incrementAndGet();
+                savedBytes.addAndGet(length);
+                return type.cast(value);
+            }
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Interns a value parsed from the given source bytes. Returns the value already interned for
+     * those bytes if there is one, otherwise the given value.
+     */
+    public <T> T intern(Class<T> type, long hash, int length, T value) {
+        Key key = new Key(type, hash, length);
+        synchronized (entries) {
+            purge();
+            ValueReference reference = entries.get(key);
+            Object existing = reference != null ? reference.get() : null;
+            if (existing != null) {
+                hits.incrementAndGet();
+                savedBytes.addAndGet(length);
+                return type.cast(existing);
+            }
+            entries.put(key, new ValueReference(key, value, collected));
+        }
+        return value;
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Returns the total size of the source bytes whose parse was shared instead of kept again.
+     */
+    public long getSavedBytes() {
+        return savedBytes.get();
+    }
+
+    public int size() {
+        synchronized (entries) {
+            purge();
+            return entries.size();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("InternPool[entries=%d, hits=%d, misses=%d, saved=%d bytes]",
+            size(), getHits(), getMisses(), getSavedBytes());
+    }
+
+    /**
+     * Removes the entries whose values were collected. Must hold the entries lock.
+     */
+    private void purge() {
+        ValueReference reference;
+        while ((reference = (ValueReference) collected.poll()) != null) {
+            // The key may have been interned again since this value was collected
+            if (entries.get(reference.key) == reference) {
+                entries.remove(reference.key);
+            }
+        }
+    }
+
+    private static class Key {
+        private final Class<?> type;
+        private final long hash;
+        private final int length;
+
+        public Key(Class<?> type, long hash, int length) {
+            this.type = type;
+            this.hash = hash;
+            this.length = length;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return hash == other.hash && length == other.length && type == other.type;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(type, hash, length);
+        }
+    }
+
+    private static class ValueReference extends WeakReference<Object> {
+        public final Key key;
+
+        public ValueReference(Key key, Object value, ReferenceQueue<Object> queue) {
+            super(value, queue);
+            this.key = key;
+        }
+    }
+}
@@ -2,7 +2,9 @@ package core;
 
 import burp.api.montoya.http.message.HttpRequestResponse;
 import java.awt.Color;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Interface for LLM providers to implement their specific parsing and configuration logic.
@@ -13,6 +15,22 @@ public interface LLMProvider {
      */
     boolean isProviderMessage(HttpRequestResponse requestResponse);
 
+    /**
+     * Returns the hosts this provider's traffic is sent to, used by the registry to index providers.
+     * An empty set means the provider is consulted for every host.
+     */
+    default Set<String> getHosts() {
+        return Collections.emptySet();
+    }
+
+    /**
+     * Returns the request path prefixes this provider handles. The registry skips the provider for
+     * paths that match none of them. An empty list means every path is considered.
+     */
+    default List<String> getPathPrefixes() {
+        return Collections.emptyList();
+    }
+
     /**
      * Parses the request body into a list of conversation messages.
      */
@@ -24,6 +42,15 @@ public interface LLMProvider {
      */
     ConversationMessage parseResponse(HttpRequestResponse requestResponse);
 
+    /**
+     * Parses a response that is known to be complete, e.g. one from the proxy history.
+     * Providers that keep per-stream decoding state for responses that are still growing should
+     * decode these on their own, so they don't evict the state of live streams.
+     */
+    default ConversationMessage parseCompleteResponse(HttpRequestResponse requestResponse) {
+        return parseResponse(requestResponse);
+    }
+
     /**
      * Returns the display name of this provider.
      */
@@ -1,43 +1,72 @@
 package core;
 
 import burp.api.montoya.http.message.HttpRequestResponse;
+import burp.api.montoya.http.message.requests.HttpRequest;
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
 
 /**
  * Registry for managing LLM providers and automatically detecting the appropriate provider
  * for a given HTTP request/response.
+ *
+ * Providers are indexed by the hosts they declare, so detection only consults the providers
+ * that can match a request's host. The verdict for recently seen request/response objects is
+ * memoized, since an editor asks for it several times while displaying one item.
+ *
+ * The provider list and its index are published together as an immutable snapshot. Lookups
+ * read the current snapshot without locking, and registration atomically swaps in a new one,
+ * so providers can be added or removed while editors are detecting on other threads.
  */
 public class LLMProviderRegistry {
-    private static LLMProviderRegistry instance;
-    private final List<LLMProvider> providers;
+    // Number of memoized detection verdicts; must be a power of two
+    private static final int MEMO_SIZE = 64;
+
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>(new Snapshot(List.of()));
+    private final Verdict[] memo = new Verdict[MEMO_SIZE];
 
     private LLMProviderRegistry() {
-        this.providers = new ArrayList<>();
     }
 
-    public static synchronized LLMProviderRegistry getInstance() {
-        if (instance == null) {
-            instance = new LLMProviderRegistry();
-        }
-        return instance;
+    public static LLMProviderRegistry getInstance() {
+        return Holder.INSTANCE;
     }
 
     /**
      * Registers a new LLM provider.
      */
     public void registerProvider(LLMProvider provider) {
-        if (provider != null && !providers.contains(provider)) {
-            providers.add(provider);
+        if (provider == null) {
+            return;
         }
+        update(providers -> {
+            if (providers.contains(provider)) {
+                return providers;
+            }
+            List<LLMProvider> updated = new ArrayList<>(providers);
+            updated.add(provider);
+            return updated;
+        });
     }
 
     /**
      * Unregisters an LLM provider.
      */
     public void unregisterProvider(LLMProvider provider) {
-        providers.remove(provider);
+        update(providers -> {
+            if (!providers.contains(provider)) {
+                return providers;
+            }
+            List<LLMProvider> updated = new ArrayList<>(providers);
+            updated.remove(provider);
+            return updated;
+        });
     }
 
     /**
@@ -48,13 +77,31 @@ public class LLMProviderRegistry {
             return Optional.empty();
         }
 
-        for (LLMProvider provider : providers) {
-            if (provider.isProviderMessage(requestResponse)) {
-                return Optional.of(provider);
-            }
+        Snapshot current = snapshot.get();
+        int slot = System.identityHashCode(requestResponse) & (MEMO_SIZE - 1);
+        Verdict verdict = memo[slot];
+        if (verdict != null && verdict.snapshot == current && verdict.requestResponse.get() == requestResponse) {
+            return Optional.ofNullable(verdict.provider);
         }
 
-        return Optional.empty();
+        LLMProvider provider = current.detect(requestResponse);
+        memo[slot] = new Verdict(requestResponse, provider, current);
+        return Optional.ofNullable(provider);
+    }
+
+    /**
+     * Checks whether the given provider handles the request/response, reusing the memoized
+     * verdict when the item was already classified.
+     */
+    public boolean isHandledBy(LLMProvider provider, HttpRequestResponse requestResponse) {
+        if (requestResponse == null) {
+            return false;
+        }
+        if (findProvider(requestResponse).orElse(null) == provider) {
+            return true;
+        }
+        // The provider may still match if an earlier registered provider claimed the item
+        return provider.isProviderMessage(requestResponse);
     }
 
     /**
@@ -68,13 +115,130 @@ public class LLMProviderRegistry {
      * Gets all registered providers.
      */
     public List<LLMProvider> getAllProviders() {
-        return new ArrayList<>(providers);
+        return snapshot.get().providers;
     }
 
     /**
      * Clears all registered providers.
      */
     public void clearProviders() {
-        providers.clear();
+        update(providers -> List.of());
+    }
+
+    private void update(UnaryOperator<List<LLMProvider>> change) {
+        while (true) {
+            Snapshot current = snapshot.get();
+            List<LLMProvider> providers = change.apply(current.providers);
+            if (providers == current.providers) {
+                return;
+            }
+            // A new snapshot also invalidates every memoized verdict taken against the old one
+            if (snapshot.compareAndSet(current, new Snapshot(providers))) {
+                return;
+            }
+        }
+    }
+
+    private static class Holder {
+        private static final LLMProviderRegistry INSTANCE = new LLMProviderRegistry();
+    }
+
+    /**
+     * Immutable provider list together with its host index.
+     */
+    private static class Snapshot {
+        public final List<LLMProvider> providers;
+        // Providers by declared host, each list also holding the host-agnostic providers in registration order
+        private final Map<String, List<LLMProvider>> providersByHost;
+        // Providers that declare no hosts and are consulted for every request
+        private final List<LLMProvider> anyHostProviders;
+
+        public Snapshot(List<LLMProvider> providers) {
+            this.providers = List.copyOf(providers);
+
+            List<LLMProvider> anyHost = new ArrayList<>();
+            Map<String, List<LLMProvider>> byHost = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+
+            for (LLMProvider provider : this.providers) {
+                if (provider.getHosts().isEmpty()) {
+                    anyHost.add(provider);
+                }
+                for (String host : provider.getHosts()) {
+                    byHost.computeIfAbsent(host, h -> new ArrayList<>());
+                }
+            }
+
+            // Fill each host bucket in registration order, including the host-agnostic providers
+            for (Map.Entry<String, List<LLMProvider>> entry : byHost.entrySet()) {
+                for (LLMProvider provider : this.providers) {
+                    if (provider.getHosts().isEmpty() || containsHost(provider, entry.getKey())) {
+                        entry.getValue().add(provider);
+                    }
+                }
+                entry.setValue(List.copyOf(entry.getValue()));
+            }
+
+            this.providersByHost = Collections.unmodifiableMap(byHost);
+            this.anyHostProviders = List.copyOf(anyHost);
+        }
+
+        public LLMProvider detect(HttpRequestResponse requestResponse) {
+            HttpRequest request = requestResponse.request();
+            if (request == null) {
+                return null;
+            }
+
+            List<LLMProvider> candidates = providersByHost.getOrDefault(request.httpService().host(), anyHostProviders);
+            if (candidates.isEmpty()) {
+                return null;
+            }
+
+            String path = request.path();
+            for (LLMProvider provider : candidates) {
+                if (matchesPath(provider, path) && provider.isProviderMessage(requestResponse)) {
+                    return provider;
+                }
+            }
+
+            return null;
+        }
+
+        private static boolean matchesPath(LLMProvider provider, String path) {
+            List<String> prefixes = provider.getPathPrefixes();
+            if (prefixes.isEmpty()) {
+                return true;
+            }
+            for (String prefix : prefixes) {
+                if (path.startsWith(prefix)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private static boolean containsHost(LLMProvider provider, String host) {
+            for (String providerHost : provider.getHosts()) {
+                if (providerHost.equalsIgnoreCase(host)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Memoized detection result for one request/response object, valid for one snapshot.
+     * All fields are final, so a verdict can be shared between threads through the memo array.
+     */
+    private static class Verdict {
+        public final WeakReference<HttpRequestResponse> requestResponse;
+        public final LLMProvider provider;
+        public final Snapshot snapshot;
+
+        public Verdict(HttpRequestResponse requestResponse, LLMProvider provider, Snapshot snapshot) {
+            this.requestResponse = new WeakReference<>(requestResponse);
+            this.provider = provider;
+            this.snapshot = snapshot;
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,71 @@
+package core;
+
+import burp.api.montoya.http.handler.TimingData;
+
+import java.time.Duration;
+
+/**
+ * Timing of one LLM call: time to the first response byte, time to the last, and the rate at
+ * which output tokens were streamed in between.
+ */
+public class Latency {
+    private final long timeToFirstByteMillis;
+    private final long totalMillis;
+    private final double outputTokensPerSecond;
+
+    public Latency(long timeToFirstByteMillis, long totalMillis, double outputTokensPerSecond) {
+        this.timeToFirstByteMillis = timeToFirstByteMillis;
+        this.totalMillis = totalMillis;
+        this.outputTokensPerSecond = outputTokensPerSecond;
+    }
+
+    /**
+     * Combines Burp's timing of a call with the response's usage. Returns null if the timing is
+     * unknown. The token rate is 0 if the usage is unknown or the response wasn't streamed, since a
+     * response sent whole arrives too quickly to say how fast it was generated.
+     */
+    public static Latency of(TimingData timing, Usage usage) {
+        if (timing == null) {
+            return null;
+        }
+
+        Duration firstByte = timing.timeBetweenRequestSentAndStartOfResponse();
+        Duration total = timing.timeBetweenRequestSentAndEndOfResponse();
+        if (firstByte == null || total == null) {
+            return null;
+        }
+
+        // Tokens are generated after the first byte, so that wait is not counted against the rate
+        long streamingMillis = total.toMillis() - firstByte.toMillis();
+        if (streamingMillis <= 0) {
+            streamingMillis = total.toMillis();
+        }
+        double tokensPerSecond = usage != null && usage.isStreamed() && streamingMillis > 0
+            ? usage.getOutputTokens() * 1000.0 / streamingMillis : 0;
+        return new Latency(firstByte.toMillis(), total.toMillis(), tokensPerSecond);
+    }
+
+    public long getTimeToFirstByteMillis() {
+        return timeToFirstByteMillis;
+    }
+
+    public long getTotalMillis() {
+        return totalMillis;
+    }
+
+    /**
+     * Returns the output tokens per second between the first and the last response byte.
+     */
+    public double getOutputTokensPerSecond() {
+        return outputTokensPerSecond;
+    }
+
+    @Override
+    public String toString() {
+        String text = String.format("Time to first byte: %,d ms  ·  Total: %,d ms", timeToFirstByteMillis, totalMillis);
+        if (outputTokensPerSecond > 0) {
+            text += String.format("  ·  %.1f output tokens/s", outputTokensPerSecond);
+        }
+        return text;
+    }
+}
@@ -0,0 +1,153 @@
+package core;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Latency distributions of many calls, per model and per session, kept as quantile sketches
+ * so percentiles stay cheap however many calls are added. Thread-safe.
+ */
+public class LatencyStats {
+    private final Map<String, Distribution> byModel = new HashMap<>();
+    private final Map<Integer, Distribution> bySession = new HashMap<>();
+
+    /**
+     * Adds a call's latency to its model's and its session's distributions.
+     * The session is identified by the id of the node that started it.
+     */
+    public synchronized void add(String model, int session, Latency latency) {
+        String key = model != null ? model : "unknown";
+        byModel.computeIfAbsent(key, Distribution::new).add(latency);
+        bySession.computeIfAbsent(session, s -> new Distribution(null)).add(latency);
+    }
+
+    /**
+     * Returns the percentiles of each model.
+     */
+    public synchronized List<Percentiles> getModelPercentiles() {
+        List<Percentiles> percentiles = new ArrayList<>();
+        for (Distribution distribution : byModel.values()) {
+            percentiles.add(distribution.percentiles());
+        }
+        return percentiles;
+    }
+
+    /**
+     * Returns the percentiles of each session, keyed by the id of the node that started it.
+     */
+    public synchronized Map<Integer, Percentiles> getSessionPercentiles() {
+        Map<Integer, Percentiles> percentiles = new HashMap<>();
+        for (Map.Entry<Integer, Distribution> entry : bySession.entrySet()) {
+            percentiles.put(entry.getKey(), entry.getValue().percentiles());
+        }
+        return percentiles;
+    }
+
+    /**
+     * Writes the distributions in the format read by {@link #read(ByteBuffer)}.
+     */
+    public synchronized void write(DataOutputStream out) throws IOException {
+        out.writeInt(byModel.size());
+        for (Distribution distribution : byModel.values()) {
+            HistoryStore.writeString(out, distribution.model);
+            distribution.write(out);
+        }
+        out.writeInt(bySession.size());
+        for (Map.Entry<Integer, Distribution> entry : bySession.entrySet()) {
+            out.writeInt(entry.getKey());
+            entry.getValue().write(out);
+        }
+    }
+
+    /**
+     * Replaces the distributions with those written by {@link #write(DataOutputStream)}.
+     */
+    public synchronized void read(ByteBuffer in) {
+        clear();
+        int modelCount = in.getInt();
+        for (int i = 0; i < modelCount; i++) {
+            Distribution distribution = new Distribution(HistoryStore.readString(in));
+            distribution.read(in);
+            byModel.put(distribution.model, distribution);
+        }
+        int sessionCount = in.getInt();
+        for (int i = 0; i < sessionCount; i++) {
+            int session = in.getInt();
+            Distribution distribution = new Distribution(null);
+            distribution.read(in);
+            bySession.put(session, distribution);
+        }
+    }
+
+    public synchronized void clear() {
+        byModel.clear();
+        bySession.clear();
+    }
+
+    private static class Distribution {
+        public final String model;
+        public final QuantileSketch timeToFirstByte = new QuantileSketch();
+        public final QuantileSketch total = new QuantileSketch();
+        // Only calls with a known output token count
+        public final QuantileSketch tokensPerSecond = new QuantileSketch();
+
+        public Distribution(String model) {
+            this.model = model;
+        }
+
+        public void add(Latency latency) {
+            timeToFirstByte.add(latency.getTimeToFirstByteMillis());
+            total.add(latency.getTotalMillis());
+            if (latency.getOutputTokensPerSecond() > 0) {
+                tokensPerSecond.add(latency.getOutputTokensPerSecond());
+            }
+        }
+
+        public Percentiles percentiles() {
+            return new Percentiles(model, total.getCount(),
+                quantiles(timeToFirstByte), quantiles(total), quantiles(tokensPerSecond));
+        }
+
+        private static double[] quantiles(QuantileSketch sketch) {
+            return new double[]{sketch.quantile(0.5), sketch.quantile(0.95), sketch.quantile(0.99)};
+        }
+
+        public void write(DataOutputStream out) throws IOException {
+            timeToFirstByte.write(out);
+            total.write(out);
+            tokensPerSecond.write(out);
+        }
+
+        public void read(ByteBuffer in) {
+            timeToFirstByte.read(in);
+            total.read(in);
+            tokensPerSecond.read(in);
+        }
+    }
+
+    /**
+     * The 50th, 95th and 99th percentiles of a group of calls. Values are NaN for empty groups.
+     */
+    public static class Percentiles {
+        // Model of a per-model group, otherwise null
+        public final String model;
+        public final long calls;
+        public final double[] timeToFirstByteMillis;
+        public final double[] totalMillis;
+        public final double[] outputTokensPerSecond;
+
+        public Percentiles(String model, long calls, double[] timeToFirstByteMillis, double[] totalMillis,
+                           double[] outputTokensPerSecond) {
+            this.model = model;
+            this.calls = calls;
+            this.timeToFirstByteMillis = timeToFirstByteMillis;
+            this.totalMillis = totalMillis;
+            this.outputTokensPerSecond = outputTokensPerSecond;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package core;
+
+/**
+ * Text that is produced on first use and cached afterwards.
+ * Providers use this to keep a reference to a slice of the message body instead of
+ * decoding or pretty-printing content that may never be displayed.
+ */
+public abstract class LazyText {
+    private volatile String value;
+
+    /**
+     * Wraps text that is already available.
+     */
+    public static LazyText of(String text) {
+        LazyText lazyText = new LazyText() {
+            @Override
+            protected String materialize() {
+                return text;
+            }
+        };
+        lazyText.value = text;
+        return lazyText;
+    }
+
+    /**
+     * Returns the text, materializing it on the first call.
+     */
+    public String get() {
+        String result = value;
+        if (result == null) {
+            result = materialize();
+            if (result == null) {
+                result = "";
+            }
+            value = result;
+        }
+        return result;
+    }
+
+    public boolean isMaterialized() {
+        return value != null;
+    }
+
+    public boolean isEmpty() {
+        return get().isEmpty();
+    }
+
+    /**
+     * Produces the text. Called at most once per instance unless two threads race on first use.
+     */
+    protected abstract String materialize();
+}
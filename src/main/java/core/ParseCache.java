@@ -0,0 +1,231 @@
+package core;
+
+import burp.api.montoya.core.ByteArray;
+import burp.api.montoya.http.message.HttpRequestResponse;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Shared cache of parsed requests and responses, keyed by provider and a fingerprint of the body bytes.
+ * Bounded by an estimate of the memory the parsed results retain, evicting least recently used
+ * entries first.
+ */
+public class ParseCache {
+    // Default budget for the estimated bytes retained by cached parses
+    private static final long DEFAULT_MAX_RETAINED_BYTES = 64L * 1024 * 1024;
+
+    // Parsed content keeps the body alive and decodes text from it, so count roughly twice its size
+    private static final int RETAINED_BYTES_PER_BODY_BYTE = 2;
+    private static final int ENTRY_OVERHEAD_BYTES = 256;
+
+    private static final ParseCache INSTANCE = new ParseCache(DEFAULT_MAX_RETAINED_BYTES);
+
+    private final long maxRetainedBytes;
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long retainedBytes;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public ParseCache(long maxRetainedBytes) {
+        this.maxRetainedBytes = maxRetainedBytes;
+    }
+
+    public static ParseCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Returns the parsed request messages, parsing with the provider on a cache miss.
+     */
+    @SuppressWarnings("unchecked")
+    public List<ConversationMessage> getRequest(LLMProvider provider, HttpRequestResponse requestResponse) {
+        ByteArray body = requestResponse.request().body();
+        Key key = new Key(provider.getProviderName(), Kind.REQUEST, body);
+
+        Object cached = lookup(key);
+        if (cached != null) {
+            return (List<ConversationMessage>) cached;
+        }
+
+        List<ConversationMessage> messages = provider.parseRequest(requestResponse);
+        store(key, messages);
+        return messages;
+    }
+
+    /**
+     * Returns the parsed response message, parsing with the provider on a cache miss.
+     */
+    public ConversationMessage getResponse(LLMProvider provider, HttpRequestResponse requestResponse) {
+        if (requestResponse.response() == null) {
+            return provider.parseResponse(requestResponse);
+        }
+
+        ByteArray body = requestResponse.response().body();
+        Key key = new Key(provider.getProviderName(), Kind.RESPONSE, body);
+
+        Object cached = lookup(key);
+        if (cached != null) {
+            return (ConversationMessage) cached;
+        }
+
+        ConversationMessage message = provider.parseResponse(requestResponse);
+        store(key, message);
+        return message;
+    }
+
+    /**
+     * Returns how many leading messages the conversation shares with the longest cached request of
+     * the same provider that it extends, i.e. whose messages all appear, in order, at its start.
+     * Returns 0 if no cached request is extended. Messages are compared by content hash.
+     */
+    @SuppressWarnings("unchecked")
+    public int getExtendedPrefixLength(LLMProvider provider, List<ConversationMessage> messages) {
+        int longest = 0;
+        synchronized (entries) {
+            for (Map.Entry<Key, Entry> entry : entries.entrySet()) {
+                Key key = entry.getKey();
+                if (key.kind != Kind.REQUEST || !key.provider.equals(provider.getProviderName())) {
+                    continue;
+                }
+                List<ConversationMessage> previous = (List<ConversationMessage>) entry.getValue().value;
+                if (previous.size() > longest && previous.size() < messages.size() && isPrefix(previous, messages)) {
+                    longest = previous.size();
+                }
+            }
+        }
+        return longest;
+    }
+
+    private static boolean isPrefix(List<ConversationMessage> prefix, List<ConversationMessage> messages) {
+        for (int i = 0; i < prefix.size(); i++) {
+            long hash = prefix.get(i).getContentHash();
+            if (hash == 0 || hash != messages.get(i).getContentHash()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Object lookup(Key key) {
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                hits.incrementAndGet();
+                return entry.value;
+            }
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    private void store(Key key, Object value) {
+        long size = (long) key.length * RETAINED_BYTES_PER_BODY_BYTE + ENTRY_OVERHEAD_BYTES;
+        if (size > maxRetainedBytes) {
+            return;
+        }
+
+        synchronized (entries) {
+            Entry previous = entries.put(key, new Entry(value, size));
+            if (previous != null) {
+                retainedBytes -= previous.size;
+            }
+            retainedBytes += size;
+
+            Iterator<Entry> iterator = entries.values().iterator();
+            while (retainedBytes > maxRetainedBytes && iterator.hasNext()) {
+                Entry eldest = iterator.next();
+                iterator.remove();
+                retainedBytes -= eldest.size;
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+            retainedBytes = 0;
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    public long getRetainedBytes() {
+        synchronized (entries) {
+            return retainedBytes;
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ParseCache[entries=%d, retained=%d bytes, hits=%d, misses=%d, evictions=%d]",
+            size(), getRetainedBytes(), getHits(), getMisses(), getEvictions());
+    }
+
+    private enum Kind {
+        REQUEST,
+        RESPONSE
+    }
+
+    private static class Key {
+        private final String provider;
+        private final Kind kind;
+        private final long hash;
+        private final int length;
+
+        public Key(String provider, Kind kind, ByteArray body) {
+            // Fingerprinted rather than hashed whole, so a lookup doesn't copy the body out of Burp
+            this.provider = provider;
+            this.kind = kind;
+            this.hash = body != null ? Hashing.fingerprint(body) : 0;
+            this.length = body != null ? body.length() : 0;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return hash == other.hash && length == other.length && kind == other.kind
+                && provider.equals(other.provider);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(provider, kind, hash, length);
+        }
+    }
+
+    private static class Entry {
+        public final Object value;
+        public final long size;
+
+        public Entry(Object value, long size) {
+            this.value = value;
+            this.size = size;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package core;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Streaming quantile estimate of positive values, such as latencies, in constant memory per
+ * order of magnitude. Values are counted in logarithmic buckets, so any quantile is returned
+ * within a fixed relative error of the true value however many values were added.
+ * Not thread-safe.
+ */
+public class QuantileSketch {
+    // Relative error of returned quantiles
+    private static final double RELATIVE_ACCURACY = 0.01;
+    private static final double GAMMA = (1 + RELATIVE_ACCURACY) / (1 - RELATIVE_ACCURACY);
+    private static final double LOG_GAMMA = Math.log(GAMMA);
+    // Values at or below this are counted as zero
+    private static final double MIN_VALUE = 1e-6;
+
+    // Counts of buckets offset to offset + counts.length - 1; bucket i holds (GAMMA^(i-1), GAMMA^i]
+    private int[] counts = new int[0];
+    private int offset;
+    private long zeroCount;
+    private long count;
+
+    public void add(double value) {
+        count++;
+        if (value <= MIN_VALUE) {
+            zeroCount++;
+            return;
+        }
+
+        int bucket = (int) Math.ceil(Math.log(value) / LOG_GAMMA);
+        if (counts.length == 0) {
+            counts = new int[8];
+            offset = bucket - 4;
+        } else if (bucket < offset) {
+            int grow = Math.max(offset - bucket, counts.length / 2);
+            int[] grown = new int[counts.length + grow];
+            System.arraycopy(counts, 0, grown, grow, counts.length);
+            counts = grown;
+            offset -= grow;
+        } else if (bucket >= offset + counts.length) {
+            counts = Arrays.copyOf(counts, Math.max(bucket - offset + 1, counts.length + counts.length / 2));
+        }
+        counts[bucket - offset]++;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the value at the quantile, e.g. 0.95 for the 95th percentile, or NaN if empty.
+     */
+    public double quantile(double quantile) {
+        if (count == 0) {
+            return Double.NaN;
+        }
+
+        long rank = (long) Math.floor(quantile * (count - 1));
+        if (rank < zeroCount) {
+            return 0;
+        }
+
+        long seen = zeroCount;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen > rank) {
+                // Middle of the bucket in relative terms
+                return 2 * Math.pow(GAMMA, offset + i) / (GAMMA + 1);
+            }
+        }
+        return 2 * Math.pow(GAMMA, offset + counts.length - 1) / (GAMMA + 1);
+    }
+
+    public void write(DataOutputStream out) throws IOException {
+        out.writeLong(count);
+        out.writeLong(zeroCount);
+        out.writeInt(offset);
+        HistoryStore.writeInts(out, counts);
+    }
+
+    public void read(ByteBuffer in) {
+        count = in.getLong();
+        zeroCount = in.getLong();
+        offset = in.getInt();
+        counts = HistoryStore.readInts(in);
+    }
+}
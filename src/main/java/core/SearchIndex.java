@@ -0,0 +1,259 @@
+package core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Trigram index over a list of texts, such as the searchable texts of a conversation's content
+ * items in display order. Literal queries of three or more characters are answered by intersecting
+ * the documents that contain each of the query's trigrams and only searching those.
+ * Case is folded for ASCII letters only, matching the search bar's case-insensitive mode.
+ * The index keeps no text; documents are read again from their suppliers to verify matches.
+ */
+public class SearchIndex {
+    // Queries shorter than this have no trigram and must scan every document
+    public static final int MIN_QUERY_LENGTH = 3;
+
+    private static final long EMPTY = -1L;
+
+    private final List<Supplier<String>> documents;
+
+    // Open addressing table from trigram to the sorted ids of the documents containing it
+    private long[] keys;
+    private int[][] postings;
+    private int[] postingSizes;
+    private int size;
+
+    /**
+     * Builds the index, reading every document once.
+     */
+    public SearchIndex(List<Supplier<String>> documents) {
+        this.documents = documents;
+        this.keys = new long[1024];
+        this.postings = new int[1024][];
+        this.postingSizes = new int[1024];
+        Arrays.fill(keys, EMPTY);
+
+        for (int document = 0; document < documents.size(); document++) {
+            String text = documents.get(document).get();
+            if (text == null || text.length() < MIN_QUERY_LENGTH) {
+                continue;
+            }
+
+            char c1 = fold(text.charAt(0));
+            char c2 = fold(text.charAt(1));
+            for (int i = 2; i < text.length(); i++) {
+                char c3 = fold(text.charAt(i));
+                add(trigram(c1, c2, c3), document);
+                c1 = c2;
+                c2 = c3;
+            }
+        }
+    }
+
+    /**
+     * Returns whether the query can be narrowed down by the index.
+     */
+    public static boolean canNarrow(String literal) {
+        return literal != null && literal.length() >= MIN_QUERY_LENGTH;
+    }
+
+    public int getDocumentCount() {
+        return documents.size();
+    }
+
+    /**
+     * Returns the ids of the documents that may contain the literal, in increasing order.
+     * Every document containing it is included, ignoring ASCII case. Short queries return all documents.
+     */
+    public int[] candidates(String literal) {
+        if (!canNarrow(literal)) {
+            int[] all = new int[documents.size()];
+            for (int i = 0; i < all.length; i++) {
+                all[i] = i;
+            }
+            return all;
+        }
+
+        int[] result = null;
+        char c1 = fold(literal.charAt(0));
+        char c2 = fold(literal.charAt(1));
+        for (int i = 2; i < literal.length(); i++) {
+            char c3 = fold(literal.charAt(i));
+            int slot = find(trigram(c1, c2, c3));
+            if (keys[slot] == EMPTY) {
+                return new int[0];
+            }
+
+            int[] posting = Arrays.copyOf(postings[slot], postingSizes[slot]);
+            result = result == null ? posting : intersect(result, posting);
+            if (result.length == 0) {
+                return result;
+            }
+            c1 = c2;
+            c2 = c3;
+        }
+        return result;
+    }
+
+    /**
+     * Finds all occurrences of the literal, in document and offset order.
+     */
+    public List<Hit> find(String literal, boolean caseSensitive) {
+        return find(literal, caseSensitive, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Finds the first maxHits occurrences of the literal, in document and offset order.
+     */
+    public List<Hit> find(String literal, boolean caseSensitive, int maxHits) {
+        List<Hit> hits = new ArrayList<>();
+        if (literal == null || literal.isEmpty()) {
+            return hits;
+        }
+
+        int length = literal.length();
+        for (int document : candidates(literal)) {
+            String text = documents.get(document).get();
+            if (text == null) continue;
+
+            // Non-overlapping occurrences from left to right, as a literal Matcher finds them
+            int position = indexOf(text, literal, 0, caseSensitive);
+            while (position >= 0) {
+                if (hits.size() >= maxHits) {
+                    return hits;
+                }
+                hits.add(new Hit(document, position, position + length));
+                position = indexOf(text, literal, position + length, caseSensitive);
+            }
+        }
+        return hits;
+    }
+
+    /**
+     * Finds the literal in the text from the given offset, ignoring ASCII case unless case sensitive.
+     */
+    private static int indexOf(String text, String literal, int from, boolean caseSensitive) {
+        if (caseSensitive) {
+            return text.indexOf(literal, from);
+        }
+
+        char first = fold(literal.charAt(0));
+        int last = text.length() - literal.length();
+        for (int i = from; i <= last; i++) {
+            if (fold(text.charAt(i)) != first) continue;
+
+            int j = 1;
+            while (j < literal.length() && fold(text.charAt(i + j)) == fold(literal.charAt(j))) {
+                j++;
+            }
+            if (j == literal.length()) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void add(long key, int document) {
+        int slot = find(key);
+        if (keys[slot] == EMPTY) {
+            keys[slot] = key;
+            postings[slot] = new int[4];
+            size++;
+        } else if (postings[slot][postingSizes[slot] - 1] == document) {
+            return;
+        }
+
+        int[] posting = postings[slot];
+        if (postingSizes[slot] == posting.length) {
+            posting = Arrays.copyOf(posting, posting.length * 2);
+            postings[slot] = posting;
+        }
+        posting[postingSizes[slot]++] = document;
+
+        if (size * 2 > keys.length) {
+            grow();
+        }
+    }
+
+    private int find(long key) {
+        int mask = keys.length - 1;
+        int slot = (int) mix(key) & mask;
+        while (keys[slot] != EMPTY && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        int[][] oldPostings = postings;
+        int[] oldSizes = postingSizes;
+
+        keys = new long[oldKeys.length * 2];
+        postings = new int[keys.length][];
+        postingSizes = new int[keys.length];
+        Arrays.fill(keys, EMPTY);
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = find(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                postings[slot] = oldPostings[i];
+                postingSizes[slot] = oldSizes[i];
+            }
+        }
+    }
+
+    private static int[] intersect(int[] a, int[] b) {
+        int[] result = new int[Math.min(a.length, b.length)];
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                result[count++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    /**
+     * Folds ASCII case only, like a Pattern with CASE_INSENSITIVE and without UNICODE_CASE.
+     */
+    private static char fold(char c) {
+        return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+    }
+
+    private static long trigram(char c1, char c2, char c3) {
+        return ((long) c1 << 32) | ((long) c2 << 16) | c3;
+    }
+
+    private static long mix(long key) {
+        key *= 0x9E3779B97F4A7C15L;
+        return key ^ (key >>> 29);
+    }
+
+    /**
+     * One occurrence: the document it is in and its range in the document's text.
+     */
+    public static class Hit {
+        public final int document;
+        public final int start;
+        public final int end;
+
+        public Hit(int document, int start, int end) {
+            this.document = document;
+            this.start = start;
+            this.end = end;
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package core;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Groups the requests of many history items into sessions, where each request extends an earlier
+ * request's messages. Every request is hashed once per message prefix with a rolling hash of
+ * the messages' content hashes, and its full hash is remembered. A new request is linked to the
+ * longest of its prefixes that was seen as a whole request, so adding a request costs one map
+ * lookup per message regardless of how many requests came before. Thread-safe.
+ */
+public class SessionBuilder {
+    // Characters of each session's first user message kept as its title
+    private static final int TITLE_LENGTH = 160;
+
+    // Hash of each complete request seen, to the most recent node with exactly those messages
+    private final Map<Long, Integer> nodesByHash = new HashMap<>();
+    private final List<Node> nodes = new ArrayList<>();
+    private int sessionCount;
+
+    /**
+     * Returns the rolling hashes of each prefix of the messages: element i covers messages 0 to i.
+     * Stops at the first message without a content hash, since nothing after it can be matched.
+     */
+    public static long[] prefixHashes(List<ConversationMessage> messages) {
+        long[] hashes = new long[messages.size()];
+        long hash = 0;
+        for (int i = 0; i < messages.size(); i++) {
+            long contentHash = messages.get(i).getContentHash();
+            if (contentHash == 0) {
+                return Arrays.copyOf(hashes, i);
+            }
+            hash = Hashing.combine(hash, contentHash);
+            hashes[i] = hash;
+        }
+        return hashes;
+    }
+
+    /**
+     * Adds a history item's request messages and returns its node. Items must be added in
+     * increasing order so that a request's parent is always added before it.
+     */
+    public synchronized Node addItem(int item, List<ConversationMessage> messages) {
+        long[] hashes = prefixHashes(messages);
+
+        // Longest prefix that was a whole earlier request; a repeated request extends its twin
+        Node parent = null;
+        for (int length = hashes.length; length > 0 && parent == null; length--) {
+            Integer id = nodesByHash.get(hashes[length - 1]);
+            if (id != null) {
+                parent = nodes.get(id);
+            }
+        }
+
+        Node node;
+        if (parent == null) {
+            node = new Node(nodes.size(), item, null, false, nodes.size(), sessionCount++, messages.size(), 0,
+                firstUserText(messages));
+        } else {
+            node = new Node(nodes.size(), item, parent, !parent.extended, parent.session, parent.sessionNumber,
+                messages.size(), parent.messageCount, parent.title);
+            parent.extended = true;
+        }
+        nodes.add(node);
+
+        // Only whole requests whose every message is hashed can be recognized later
+        if (hashes.length == messages.size() && hashes.length > 0) {
+            nodesByHash.put(hashes[hashes.length - 1], node.id);
+        }
+        return node;
+    }
+
+    public synchronized Node getNode(int id) {
+        return nodes.get(id);
+    }
+
+    public synchronized int getNodeCount() {
+        return nodes.size();
+    }
+
+    public synchronized int getSessionCount() {
+        return sessionCount;
+    }
+
+    /**
+     * Returns all nodes in the order they were added.
+     */
+    public synchronized List<Node> getNodes() {
+        return new ArrayList<>(nodes);
+    }
+
+    /**
+     * Writes the sessions in the format read by {@link #read(ByteBuffer)}.
+     */
+    public synchronized void write(DataOutputStream out) throws IOException {
+        out.writeInt(sessionCount);
+        out.writeInt(nodes.size());
+        for (Node node : nodes) {
+            out.writeInt(node.item);
+            out.writeInt(node.parent != null ? node.parent.id : -1);
+            out.writeBoolean(node.continuation);
+            out.writeBoolean(node.extended);
+            out.writeInt(node.sessionNumber);
+            out.writeInt(node.messageCount);
+            // Other nodes share their session's title
+            if (node.parent == null) {
+                HistoryStore.writeString(out, node.title);
+            }
+        }
+
+        out.writeInt(nodesByHash.size());
+        for (Map.Entry<Long, Integer> entry : nodesByHash.entrySet()) {
+            out.writeLong(entry.getKey());
+            out.writeInt(entry.getValue());
+        }
+    }
+
+    /**
+     * Replaces the sessions with those written by {@link #write(DataOutputStream)}.
+     */
+    public synchronized void read(ByteBuffer in) {
+        clear();
+
+        sessionCount = in.getInt();
+        int nodeCount = in.getInt();
+        for (int id = 0; id < nodeCount; id++) {
+            int item = in.getInt();
+            int parentId = in.getInt();
+            boolean continuation = in.get() != 0;
+            boolean extended = in.get() != 0;
+            int sessionNumber = in.getInt();
+            int messageCount = in.getInt();
+
+            Node node;
+            if (parentId < 0) {
+                node = new Node(id, item, null, false, id, sessionNumber, messageCount, 0, HistoryStore.readString(in));
+            } else {
+                Node parent = nodes.get(parentId);
+                node = new Node(id, item, parent, continuation, parent.session, sessionNumber, messageCount,
+                    parent.messageCount, parent.title);
+            }
+            node.extended = extended;
+            nodes.add(node);
+        }
+
+        int hashCount = in.getInt();
+        for (int i = 0; i < hashCount; i++) {
+            long hash = in.getLong();
+            nodesByHash.put(hash, in.getInt());
+        }
+    }
+
+    public synchronized void clear() {
+        nodesByHash.clear();
+        nodes.clear();
+        sessionCount = 0;
+    }
+
+    private static String firstUserText(List<ConversationMessage> messages) {
+        for (ConversationMessage message : messages) {
+            if (message.getRole() != ConversationMessage.Role.USER) continue;
+
+            for (ContentItem item : message.getContentItems()) {
+                String text = item.getDisplayText();
+                if (text != null && !text.isBlank()) {
+                    String title = text.strip();
+                    title = title.substring(0, Math.min(title.length(), TITLE_LENGTH));
+                    return title.replaceAll("\\s+", " ");
+                }
+            }
+        }
+        return "";
+    }
+
+    /**
+     * One request in a session: the item it came from and the earlier request it extends.
+     */
+    public static class Node {
+        public final int id;
+        public final int item;
+        // The request this one extends, or null if it starts a session
+        public final Node parent;
+        // Whether this is the first request to extend the parent, i.e. continues the parent's line
+        // of the conversation rather than branching off it
+        public final boolean continuation;
+        // Id of the node that started the session
+        public final int session;
+        // Sessions are numbered from 0 in the order they started
+        public final int sessionNumber;
+        public final int messageCount;
+        // Leading messages shared with the parent, i.e. all of the parent's messages
+        public final int sharedCount;
+        // Text of the session's first user message
+        public final String title;
+        // Whether a later request extends this one; guarded by the builder's lock
+        private boolean extended;
+
+        public Node(int id, int item, Node parent, boolean continuation, int session, int sessionNumber,
+                    int messageCount, int sharedCount, String title) {
+            this.id = id;
+            this.item = item;
+            this.parent = parent;
+            this.continuation = continuation;
+            this.session = session;
+            this.sessionNumber = sessionNumber;
+            this.messageCount = messageCount;
+            this.sharedCount = sharedCount;
+            this.title = title;
+        }
+    }
+}
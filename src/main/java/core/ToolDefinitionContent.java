@@ -2,13 +2,19 @@ package core;
 
 /**
  * Represents a tool definition (available tool) in an LLM request.
+ * Description and input schema are materialized lazily since most definitions stay collapsed.
  */
 public class ToolDefinitionContent extends ContentItem {
     private final String name;
-    private final String description;
-    private final String inputSchema;
+    private final LazyText description;
+    private final LazyText inputSchema;
+    private volatile String displayText;
 
     public ToolDefinitionContent(String name, String description, String inputSchema) {
+        this(name, LazyText.of(description), LazyText.of(inputSchema));
+    }
+
+    public ToolDefinitionContent(String name, LazyText description, LazyText inputSchema) {
         super(ContentType.TOOL_DEFINITION);
         this.name = name;
         this.description = description;
@@ -20,20 +26,26 @@ public class ToolDefinitionContent extends ContentItem {
     }
 
     public String getDescription() {
-        return description;
+        return description.get();
     }
 
     public String getInputSchema() {
-        return inputSchema;
+        return inputSchema.get();
     }
 
     @Override
     public String getDisplayText() {
-        StringBuilder sb = new StringBuilder();
-        sb.append(description);
-        if (inputSchema != null && !inputSchema.isEmpty()) {
-            sb.append("\n\nInput Schema:\n").append(inputSchema);
+        String text = displayText;
+        if (text == null) {
+            StringBuilder sb = new StringBuilder();
+            sb.append(getDescription());
+            String schema = getInputSchema();
+            if (!schema.isEmpty()) {
+                sb.append("\n\nInput Schema:\n").append(schema);
+            }
+            text = sb.toString();
+            displayText = text;
         }
-        return sb.toString();
+        return text;
     }
 }
@@ -2,12 +2,17 @@ package core;
 
 /**
  * Represents a tool result in a conversation message.
+ * The content is materialized lazily since large results usually stay collapsed.
  */
 public class ToolResultContent extends ContentItem {
     private final String toolUseId;
-    private final String content;
+    private final LazyText content;
 
     public ToolResultContent(String toolUseId, String content) {
+        this(toolUseId, LazyText.of(content));
+    }
+
+    public ToolResultContent(String toolUseId, LazyText content) {
         super(ContentType.TOOL_RESULT);
         this.toolUseId = toolUseId;
         this.content = content;
@@ -18,11 +23,11 @@ public class ToolResultContent extends ContentItem {
     }
 
     public String getContent() {
-        return content;
+        return content.get();
     }
 
     @Override
     public String getDisplayText() {
-        return content;
+        return content.get();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,85 @@
+package core;
+
+/**
+ * Token usage and stop metadata reported with an LLM response.
+ * Counts the provider didn't report are 0; the model and stop reason may be null.
+ * Streamed responses are generated while they are received, so their timing gives an output rate.
+ */
+public class Usage {
+    private final String model;
+    private final String stopReason;
+    private final long inputTokens;
+    private final long outputTokens;
+    private final long cacheCreationInputTokens;
+    private final long cacheReadInputTokens;
+    private final boolean streamed;
+
+    public Usage(String model, String stopReason, long inputTokens, long outputTokens,
+                 long cacheCreationInputTokens, long cacheReadInputTokens, boolean streamed) {
+        this.model = model;
+        this.stopReason = stopReason;
+        this.inputTokens = inputTokens;
+        this.outputTokens = outputTokens;
+        this.cacheCreationInputTokens = cacheCreationInputTokens;
+        this.cacheReadInputTokens = cacheReadInputTokens;
+        this.streamed = streamed;
+    }
+
+    public String getModel() {
+        return model;
+    }
+
+    public String getStopReason() {
+        return stopReason;
+    }
+
+    /**
+     * Returns the input tokens that were neither written to nor read from the prompt cache.
+     */
+    public long getInputTokens() {
+        return inputTokens;
+    }
+
+    public long getOutputTokens() {
+        return outputTokens;
+    }
+
+    public long getCacheCreationInputTokens() {
+        return cacheCreationInputTokens;
+    }
+
+    public long getCacheReadInputTokens() {
+        return cacheReadInputTokens;
+    }
+
+    /**
+     * Returns whether the response was streamed as it was generated, e.g. as server-sent events.
+     */
+    public boolean isStreamed() {
+        return streamed;
+    }
+
+    /**
+     * Returns all input tokens, whether cached or not.
+     */
+    public long getTotalInputTokens() {
+        return inputTokens + cacheCreationInputTokens + cacheReadInputTokens;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        if (model != null) {
+            text.append(model).append("  ·  ");
+        }
+        text.append(String.format("Input: %,d", inputTokens));
+        if (cacheCreationInputTokens > 0 || cacheReadInputTokens > 0) {
+            text.append(String.format(" (+%,d cache write, %,d cache read)", cacheCreationInputTokens, cacheReadInputTokens));
+        }
+        text.append(String.format("  ·  Output: %,d", outputTokens));
+        if (stopReason != null) {
+            text.append("  ·  Stop: ").append(stopReason);
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,141 @@
+package core;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Running token usage totals of many responses, per model and per session. Thread-safe.
+ */
+public class UsageTotals {
+    private final Map<String, Total> byModel = new HashMap<>();
+    private final Map<Integer, Total> bySession = new HashMap<>();
+
+    /**
+     * Adds a response's usage to its model's and its session's totals.
+     * The session is identified by the id of the node that started it.
+     */
+    public synchronized void add(Usage usage, int session) {
+        String model = usage.getModel() != null ? usage.getModel() : "unknown";
+        byModel.computeIfAbsent(model, Total::new).add(usage);
+        bySession.computeIfAbsent(session, s -> new Total(null)).add(usage);
+    }
+
+    /**
+     * Returns a copy of the totals of each model.
+     */
+    public synchronized List<Total> getModelTotals() {
+        List<Total> totals = new ArrayList<>();
+        for (Total total : byModel.values()) {
+            totals.add(total.copy());
+        }
+        return totals;
+    }
+
+    /**
+     * Returns a copy of the totals of each session, keyed by the id of the node that started it.
+     */
+    public synchronized Map<Integer, Total> getSessionTotals() {
+        Map<Integer, Total> totals = new HashMap<>();
+        for (Map.Entry<Integer, Total> entry : bySession.entrySet()) {
+            totals.put(entry.getKey(), entry.getValue().copy());
+        }
+        return totals;
+    }
+
+    /**
+     * Writes the totals in the format read by {@link #read(ByteBuffer)}.
+     */
+    public synchronized void write(DataOutputStream out) throws IOException {
+        out.writeInt(byModel.size());
+        for (Total total : byModel.values()) {
+            HistoryStore.writeString(out, total.model);
+            total.write(out);
+        }
+        out.writeInt(bySession.size());
+        for (Map.Entry<Integer, Total> entry : bySession.entrySet()) {
+            out.writeInt(entry.getKey());
+            entry.getValue().write(out);
+        }
+    }
+
+    /**
+     * Replaces the totals with those written by {@link #write(DataOutputStream)}.
+     */
+    public synchronized void read(ByteBuffer in) {
+        clear();
+        int modelCount = in.getInt();
+        for (int i = 0; i < modelCount; i++) {
+            Total total = new Total(HistoryStore.readString(in));
+            total.read(in);
+            byModel.put(total.model, total);
+        }
+        int sessionCount = in.getInt();
+        for (int i = 0; i < sessionCount; i++) {
+            Total total = new Total(null);
+            int session = in.getInt();
+            total.read(in);
+            bySession.put(session, total);
+        }
+    }
+
+    public synchronized void clear() {
+        byModel.clear();
+        bySession.clear();
+    }
+
+    /**
+     * Summed usage of a group of responses.
+     */
+    public static class Total {
+        // Model of a per-model total, otherwise null
+        public final String model;
+        public long responses;
+        public long inputTokens;
+        public long outputTokens;
+        public long cacheCreationInputTokens;
+        public long cacheReadInputTokens;
+
+        public Total(String model) {
+            this.model = model;
+        }
+
+        public void add(Usage usage) {
+            responses++;
+            inputTokens += usage.getInputTokens();
+            outputTokens += usage.getOutputTokens();
+            cacheCreationInputTokens += usage.getCacheCreationInputTokens();
+            cacheReadInputTokens += usage.getCacheReadInputTokens();
+        }
+
+        public Total copy() {
+            Total copy = new Total(model);
+            copy.responses = responses;
+            copy.inputTokens = inputTokens;
+            copy.outputTokens = outputTokens;
+            copy.cacheCreationInputTokens = cacheCreationInputTokens;
+            copy.cacheReadInputTokens = cacheReadInputTokens;
+            return copy;
+        }
+
+        private void write(DataOutputStream out) throws IOException {
+            out.writeLong(responses);
+            out.writeLong(inputTokens);
+            out.writeLong(outputTokens);
+            out.writeLong(cacheCreationInputTokens);
+            out.writeLong(cacheReadInputTokens);
+        }
+
+        private void read(ByteBuffer in) {
+            responses = in.getLong();
+            inputTokens = in.getLong();
+            outputTokens = in.getLong();
+            cacheCreationInputTokens = in.getLong();
+            cacheReadInputTokens = in.getLong();
+        }
+    }
+}
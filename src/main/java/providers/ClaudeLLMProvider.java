@@ -1,5 +1,6 @@
 package providers;
 
+import burp.api.montoya.core.ByteArray;
 import burp.api.montoya.http.message.HttpRequestResponse;
 import burp.api.montoya.http.message.requests.HttpRequest;
 import burp.api.montoya.http.message.responses.HttpResponse;
@@ -9,17 +10,35 @@ import core.*;
 
 import java.awt.Color;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * LLM provider implementation for Claude (Anthropic) API.
  */
 public class ClaudeLLMProvider implements LLMProvider {
+    private static final String HOST = "api.anthropic.com";
+    private static final String PATH_PREFIX = "/v1/messages";
+
+    // Leading bytes inspected to tell SSE and JSON response bodies apart
+    private static final int SNIFF_LENGTH = 256;
+    // Number of streamed responses whose decoding state is kept for resumption
+    private static final int MAX_STREAM_DECODERS = 32;
+
     private final ObjectMapper mapper = new ObjectMapper();
+    private final ClaudeRequestParser requestParser = new ClaudeRequestParser(mapper.getFactory(), InternPool.getInstance());
     private final ProviderConfig config;
 
+    // Resumable SSE decoders keyed by request fingerprint, least recently used first
+    private final Map<Long, ClaudeSSEDecoder> streamDecoders = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, ClaudeSSEDecoder> eldest) {
+            return size() > MAX_STREAM_DECODERS;
+        }
+    };
+
     public ClaudeLLMProvider() {
         this.config = new ProviderConfig(
             new Color(70, 130, 180),   // userColor - Steel Blue
@@ -54,18 +73,18 @@ public class ClaudeLLMProvider implements LLMProvider {
         }
 
         // Check if request host is api.anthropic.com
-        if (!request.httpService().host().equals("api.anthropic.com")) {
+        if (!request.httpService().host().equals(HOST)) {
             return false;
         }
 
-        // Check if request content type is application/json
-        String contentType = request.headerValue("Content-Type");
-        if (contentType == null || !contentType.toLowerCase().contains("application/json")) {
+        // Check if request URL starts with /v1/messages
+        if (!request.path().startsWith(PATH_PREFIX)) {
             return false;
         }
 
-        // Check if request URL starts with /v1/messages
-        if (!request.path().startsWith("/v1/messages")) {
+        // Check if request content type is application/json
+        String contentType = request.headerValue("Content-Type");
+        if (contentType == null || !containsIgnoreCase(contentType, "application/json")) {
             return false;
         }
 
@@ -77,9 +96,8 @@ public class ClaudeLLMProvider implements LLMProvider {
             if (responseContentType == null) {
                 return false;
             }
-            String contentTypeLower = responseContentType.toLowerCase();
-            if (!contentTypeLower.startsWith("text/event-stream") &&
-                !contentTypeLower.startsWith("application/json")) {
+            if (!responseContentType.regionMatches(true, 0, "text/event-stream", 0, 17) &&
+                !responseContentType.regionMatches(true, 0, "application/json", 0, 16)) {
                 return false;
             }
         }
@@ -88,97 +106,41 @@ public class ClaudeLLMProvider implements LLMProvider {
         return true;
     }
 
+    private static boolean containsIgnoreCase(String value, String part) {
+        for (int i = 0; i + part.length() <= value.length(); i++) {
+            if (value.regionMatches(true, i, part, 0, part.length())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public Set<String> getHosts() {
+        return Set.of(HOST);
+    }
+
+    @Override
+    public List<String> getPathPrefixes() {
+        return List.of(PATH_PREFIX);
+    }
+
     @Override
     public List<ConversationMessage> parseRequest(HttpRequestResponse requestResponse) {
         List<ConversationMessage> messages = new ArrayList<>();
 
-        if (!isProviderMessage(requestResponse)) {
+        // Uses the registry's memoized detection result when this item was already classified
+        if (!LLMProviderRegistry.getInstance().isHandledBy(this, requestResponse)) {
             return messages;
         }
 
-        HttpRequest request = requestResponse.request();
-        String bodyString = request.bodyToString();
+        byte[] body = bodyBytes(requestResponse.request().body());
 
-        if (bodyString == null || bodyString.isEmpty()) {
+        if (body.length == 0) {
             return messages;
         }
 
-        try {
-            JsonNode root = mapper.readTree(bodyString);
-
-            // Handle system message first if it exists
-            JsonNode systemArray = root.get("system");
-            if (systemArray != null && systemArray.isArray()) {
-                ConversationMessage systemMessage = new ConversationMessage(ConversationMessage.Role.SYSTEM);
-
-                for (JsonNode systemItem : systemArray) {
-                    if (systemItem.has("type")) {
-                        String type = systemItem.get("type").asText();
-                        if ("text".equals(type) && systemItem.has("text")) {
-                            String text = systemItem.get("text").asText();
-                            systemMessage.addContent(new TextContent(text));
-                        }
-                    } else if (systemItem.has("text")) {
-                        String text = systemItem.get("text").asText();
-                        systemMessage.addContent(new TextContent(text));
-                    }
-                }
-
-                if (systemMessage.hasContent()) {
-                    messages.add(systemMessage);
-                }
-            }
-
-            // Handle tools array if it exists (available tools for the model)
-            JsonNode toolsArray = root.get("tools");
-            if (toolsArray != null && toolsArray.isArray() && toolsArray.size() > 0) {
-                ConversationMessage toolsMessage = new ConversationMessage(ConversationMessage.Role.TOOLS);
-
-                for (JsonNode toolNode : toolsArray) {
-                    String name = toolNode.has("name") ? toolNode.get("name").asText() : "unknown";
-                    String description = toolNode.has("description") ? toolNode.get("description").asText() : "";
-                    String inputSchema = toolNode.has("input_schema") ? toolNode.get("input_schema").toPrettyString() : "";
-
-                    toolsMessage.addContent(new ToolDefinitionContent(name, description, inputSchema));
-                }
-
-                if (toolsMessage.hasContent()) {
-                    messages.add(toolsMessage);
-                }
-            }
-
-            JsonNode messagesArray = root.get("messages");
-
-            if (messagesArray == null || !messagesArray.isArray()) {
-                return messages;
-            }
-
-            for (JsonNode messageNode : messagesArray) {
-                String role = messageNode.has("role") ? messageNode.get("role").asText() : "unknown";
-                ConversationMessage message = new ConversationMessage(role);
-
-                JsonNode contentNode = messageNode.get("content");
-                if (contentNode != null) {
-                    if (contentNode.isArray()) {
-                        // Handle array of content items
-                        for (JsonNode contentItem : contentNode) {
-                            parseContentItem(contentItem, message);
-                        }
-                    } else if (contentNode.isTextual()) {
-                        // Handle simple string content
-                        String text = contentNode.asText();
-                        message.addContent(new TextContent(text));
-                    }
-                }
-
-                messages.add(message);
-            }
-
-        } catch (Exception e) {
-            // Return empty list on error
-        }
-
-        return messages;
+        return requestParser.parse(body, 0, body.length);
     }
 
     private void parseContentItem(JsonNode contentItem, ConversationMessage message) {
@@ -208,88 +170,81 @@ public class ClaudeLLMProvider implements LLMProvider {
 
     @Override
     public ConversationMessage parseResponse(HttpRequestResponse requestResponse) {
+        return parseResponse(requestResponse, true);
+    }
+
+    @Override
+    public ConversationMessage parseCompleteResponse(HttpRequestResponse requestResponse) {
+        return parseResponse(requestResponse, false);
+    }
+
+    private ConversationMessage parseResponse(HttpRequestResponse requestResponse, boolean resumable) {
         ConversationMessage message = new ConversationMessage(ConversationMessage.Role.ASSISTANT);
 
         if (requestResponse == null || requestResponse.response() == null) {
             return message;
         }
 
-        HttpResponse response = requestResponse.response();
-        String responseBody = response.bodyToString();
+        ByteArray body = requestResponse.response().body();
 
-        if (responseBody == null || responseBody.isEmpty()) {
+        if (body == null || body.length() == 0) {
             return message;
         }
 
         // Determine if this is a streaming (SSE) or non-streaming (JSON) response
-        // Check if body starts with SSE format (lines starting with "data:")
-        String trimmedBody = responseBody.trim();
-        if (trimmedBody.startsWith("data:") || trimmedBody.startsWith("event:")) {
-            // Parse as SSE (streaming response)
-            return parseSSEResponse(responseBody);
+        // by peeking at the first non-whitespace bytes for an SSE field name
+        byte[] head = body.subArray(0, Math.min(body.length(), SNIFF_LENGTH)).getBytes();
+        if (ClaudeSSEDecoder.isEventStream(head)) {
+            // Parse as SSE (streaming response), resuming where the last parse of this stream stopped
+            // unless the response is complete and won't be parsed again
+            if (!resumable) {
+                return new ClaudeSSEDecoder(mapper.getFactory()).decode(body.getBytes());
+            }
+            return parseSSEResponse(requestResponse.request(), body);
         } else {
             // Parse as JSON (non-streaming response)
-            return parseJSONResponse(responseBody);
+            return parseJSONResponse(body.getBytes());
         }
     }
 
-    private ConversationMessage parseJSONResponse(String responseBody) {
-        ConversationMessage message = new ConversationMessage(ConversationMessage.Role.ASSISTANT);
+    private ConversationMessage parseSSEResponse(HttpRequest request, ByteArray body) {
+        long streamKey = Hashing.fingerprint(request.body());
+        ClaudeSSEDecoder decoder;
 
-        try {
-            JsonNode root = mapper.readTree(responseBody);
-
-            // Parse the content array from the JSON response
-            JsonNode contentArray = root.get("content");
-            if (contentArray != null && contentArray.isArray()) {
-                for (JsonNode contentItem : contentArray) {
-                    parseContentItem(contentItem, message);
-                }
+        synchronized (streamDecoders) {
+            decoder = streamDecoders.get(streamKey);
+            if (decoder == null || !decoder.canResume(body)) {
+                decoder = new ClaudeSSEDecoder(mapper.getFactory());
+                streamDecoders.put(streamKey, decoder);
             }
+        }
 
-        } catch (Exception e) {
-            // Return message with any content parsed so far
+        synchronized (decoder) {
+            decoder.update(body);
+            return decoder.snapshot();
         }
+    }
 
-        return message;
+    private static byte[] bodyBytes(ByteArray body) {
+        return body != null ? body.getBytes() : new byte[0];
     }
 
-    private ConversationMessage parseSSEResponse(String responseBody) {
+    private ConversationMessage parseJSONResponse(byte[] responseBody) {
         ConversationMessage message = new ConversationMessage(ConversationMessage.Role.ASSISTANT);
 
         try {
-            Map<Integer, ContentBlock> activeBlocks = new HashMap<>();
-            String[] lines = responseBody.split("\n");
-
-            for (String line : lines) {
-                line = line.trim();
-
-                if (!line.startsWith("data:")) {
-                    continue;
-                }
-
-                String jsonStr = line.substring(5).trim();
-                if (jsonStr.isEmpty()) {
-                    continue;
-                }
-
-                try {
-                    JsonNode data = mapper.readTree(jsonStr);
-                    String eventType = data.has("type") ? data.get("type").asText() : "";
-
-                    if ("content_block_start".equals(eventType)) {
-                        handleContentBlockStart(data, activeBlocks);
-                    } else if ("content_block_delta".equals(eventType)) {
-                        handleContentBlockDelta(data, activeBlocks);
-                    } else if ("content_block_stop".equals(eventType)) {
-                        handleContentBlockStop(data, activeBlocks, message);
-                    }
+            JsonNode root = mapper.readTree(responseBody);
 
-                } catch (Exception e) {
-                    // Skip invalid JSON lines
+            // Parse the content array from the JSON response
+            JsonNode contentArray = root.get("content");
+            if (contentArray != null && contentArray.isArray()) {
+                for (JsonNode contentItem : contentArray) {
+                    parseContentItem(contentItem, message);
                 }
             }
 
+            message.setUsage(parseUsage(root));
+
         } catch (Exception e) {
             // Return message with any content parsed so far
         }
@@ -297,55 +252,23 @@ public class ClaudeLLMProvider implements LLMProvider {
         return message;
     }
 
-    private void handleContentBlockStart(JsonNode data, Map<Integer, ContentBlock> activeBlocks) {
-        int index = data.has("index") ? data.get("index").asInt() : 0;
-        JsonNode contentBlock = data.get("content_block");
-
-        if (contentBlock != null) {
-            String blockType = contentBlock.has("type") ? contentBlock.get("type").asText() : "";
-            ContentBlock block = new ContentBlock(blockType);
-
-            if ("tool_use".equals(blockType)) {
-                block.toolId = contentBlock.has("id") ? contentBlock.get("id").asText() : "";
-                block.toolName = contentBlock.has("name") ? contentBlock.get("name").asText() : "";
-            }
-
-            activeBlocks.put(index, block);
-        }
-    }
-
-    private void handleContentBlockDelta(JsonNode data, Map<Integer, ContentBlock> activeBlocks) {
-        int index = data.has("index") ? data.get("index").asInt() : 0;
-        JsonNode delta = data.get("delta");
-
-        if (delta != null && activeBlocks.containsKey(index)) {
-            ContentBlock block = activeBlocks.get(index);
-
-            if (delta.has("partial_json")) {
-                block.content += delta.get("partial_json").asText();
-            }
-
-            if (delta.has("text")) {
-                block.content += delta.get("text").asText();
-            }
-
-            if (delta.has("thinking")) {
-                block.content += delta.get("thinking").asText();
-            }
-        }
-    }
-
-    private void handleContentBlockStop(JsonNode data, Map<Integer, ContentBlock> activeBlocks, ConversationMessage message) {
-        int index = data.has("index") ? data.get("index").asInt() : 0;
-
-        if (activeBlocks.containsKey(index)) {
-            ContentBlock block = activeBlocks.remove(index);
-            if ("text".equals(block.type)) {
-                message.addContent(new TextContent(block.content));
-            } else if ("tool_use".equals(block.type)) {
-                message.addContent(new ToolCallContent(block.toolId, block.toolName, block.content));
-            }
+    /**
+     * Reads the model, stop reason and token usage of a non-streaming response.
+     */
+    private static Usage parseUsage(JsonNode root) {
+        JsonNode usage = root.path("usage");
+        if (!usage.isObject() && !root.path("model").isTextual()) {
+            return null;
         }
+        return new Usage(
+            root.path("model").isTextual() ? root.get("model").asText() : null,
+            root.path("stop_reason").isTextual() ? root.get("stop_reason").asText() : null,
+            usage.path("input_tokens").asLong(),
+            usage.path("output_tokens").asLong(),
+            usage.path("cache_creation_input_tokens").asLong(),
+            usage.path("cache_read_input_tokens").asLong(),
+            false
+        );
     }
 
     @Override
@@ -362,19 +285,4 @@ public class ClaudeLLMProvider implements LLMProvider {
     public ProviderConfig getProviderConfig() {
         return config;
     }
-
-    /**
-     * Helper class for parsing SSE response blocks.
-     */
-    private static class ContentBlock {
-        public String type;
-        public String content;
-        public String toolName;
-        public String toolId;
-
-        public ContentBlock(String type) {
-            this.type = type;
-            this.content = "";
-        }
-    }
-}
\ No newline at end of file
+}
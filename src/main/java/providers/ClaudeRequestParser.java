@@ -0,0 +1,505 @@
+package providers;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonLocation;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import core.*;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Single-pass streaming parser for Claude Messages API request bodies.
+ * Builds conversation messages directly from the token stream without an intermediate JSON tree.
+ * Tool descriptions, input schemas and tool results are not decoded during the pass; their
+ * content items keep a slice of the body and decode it the first time the text is needed.
+ * Each message records a hash of its source that leaves out cache_control fields, so a message
+ * hashes the same in every request of a conversation wherever the cache breakpoints are.
+ * The system prompt, the tool list and each tool definition are shared through an intern pool
+ * keyed by their source bytes, so requests that repeat them parse and keep them only once.
+ */
+public class ClaudeRequestParser {
+    private final JsonFactory factory;
+    private final InternPool internPool;
+
+    public ClaudeRequestParser(JsonFactory factory, InternPool internPool) {
+        this.factory = factory;
+        this.internPool = internPool;
+    }
+
+    /**
+     * Parses a UTF-8 request body into conversation messages.
+     * The system prompt comes first, then available tools, then the conversation turns.
+     * On malformed input, returns whatever was parsed before the error.
+     */
+    public List<ConversationMessage> parse(byte[] body, int offset, int length) {
+        List<ConversationMessage> messages = new ArrayList<>();
+        ConversationMessage systemMessage = null;
+        ConversationMessage toolsMessage = null;
+        List<ConversationMessage> turns = new ArrayList<>();
+
+        Source source = new Source(body, offset);
+
+        try (JsonParser parser = factory.createParser(body, offset, length)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return messages;
+            }
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+
+                if ("system".equals(field)) {
+                    systemMessage = parseInterned(parser, source, this::parseSystem);
+                } else if ("tools".equals(field) && value == JsonToken.START_ARRAY) {
+                    toolsMessage = parseInterned(parser, source, (p, s, token) -> parseTools(p, s));
+                } else if ("messages".equals(field) && value == JsonToken.START_ARRAY) {
+                    parseMessages(parser, source, turns);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        } catch (Exception e) {
+            // Keep whatever was parsed before the error
+        }
+
+        if (systemMessage != null && systemMessage.hasContent()) {
+            messages.add(systemMessage);
+        }
+        if (toolsMessage != null && toolsMessage.hasContent()) {
+            messages.add(toolsMessage);
+        }
+        messages.addAll(turns);
+        return messages;
+    }
+
+    /**
+     * Returns the interned message for the value the parser is positioned on, parsing it with the
+     * given function only if its bytes have not been seen. On return the parser is positioned on
+     * the value's last token.
+     */
+    private ConversationMessage parseInterned(JsonParser parser, Source source, MessageParser messageParser)
+            throws IOException {
+        int start = source.offsetOf(parser.currentTokenLocation());
+        if (parser.currentToken() == JsonToken.VALUE_STRING) {
+            // Strings are read lazily; finish it so the location is past its end
+            parser.finishToken();
+        } else {
+            parser.skipChildren();
+        }
+        int end = source.offsetOf(parser.currentLocation());
+        long hash = Hashing.hash64(source.body, start, end - start);
+
+        ConversationMessage message = internPool.get(ConversationMessage.class, hash, end - start);
+        if (message != null) {
+            return message;
+        }
+
+        // Parse a copy of the value, so the interned message's lazy slices don't keep this request's body alive
+        byte[] value = Arrays.copyOfRange(source.body, start, end);
+        try (JsonParser valueParser = factory.createParser(value)) {
+            Source valueSource = new Source(value, 0);
+            message = messageParser.parse(valueParser, valueSource, valueParser.nextToken());
+            message.setContentHash(valueSource.hash(0, valueParser));
+        }
+        return internPool.intern(ConversationMessage.class, hash, end - start, message);
+    }
+
+    private ConversationMessage parseSystem(JsonParser parser, Source source, JsonToken value) throws IOException {
+        ConversationMessage systemMessage = new ConversationMessage(ConversationMessage.Role.SYSTEM);
+
+        if (value == JsonToken.VALUE_STRING) {
+            systemMessage.addContent(new TextContent(parser.getText()));
+        } else if (value == JsonToken.START_ARRAY) {
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                ContentItem item = parseContentItem(parser, source);
+                if (item instanceof TextContent) {
+                    systemMessage.addContent(item);
+                }
+            }
+        } else {
+            parser.skipChildren();
+        }
+
+        return systemMessage;
+    }
+
+    private ConversationMessage parseTools(JsonParser parser, Source source) throws IOException {
+        ConversationMessage toolsMessage = new ConversationMessage(ConversationMessage.Role.TOOLS);
+
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            if (parser.currentToken() != JsonToken.START_OBJECT) {
+                parser.skipChildren();
+                continue;
+            }
+
+            int toolStart = source.offsetOf(parser.currentTokenLocation());
+            String name = "unknown";
+            int descriptionStart = -1;
+            int schemaStart = -1;
+            int schemaEnd = -1;
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                int fieldStart = fieldStart(parser, source, field);
+                parser.nextToken();
+
+                if ("name".equals(field)) {
+                    name = readText(parser);
+                } else if ("cache_control".equals(field)) {
+                    parser.skipChildren();
+                    source.exclude(fieldStart, source.offsetOf(parser.currentLocation()));
+                } else if ("description".equals(field)) {
+                    // Leave the string undecoded; the parser skips it on the next token
+                    descriptionStart = source.offsetOf(parser.currentTokenLocation());
+                    parser.skipChildren();
+                } else if ("input_schema".equals(field)) {
+                    schemaStart = source.offsetOf(parser.currentTokenLocation());
+                    parser.skipChildren();
+                    schemaEnd = source.offsetOf(parser.currentLocation());
+                } else {
+                    parser.skipChildren();
+                }
+            }
+
+            int toolEnd = source.offsetOf(parser.currentLocation());
+            long toolHash = Hashing.hash64(source.body, toolStart, toolEnd - toolStart);
+            ToolDefinitionContent interned = internPool.get(ToolDefinitionContent.class, toolHash, toolEnd - toolStart);
+            if (interned != null) {
+                toolsMessage.addContent(interned);
+                continue;
+            }
+
+            // Slice a copy of the tool alone, so the interned definition keeps no larger array alive
+            byte[] tool = Arrays.copyOfRange(source.body, toolStart, toolEnd);
+            LazyText description = descriptionStart >= 0
+                ? new BodySlice(tool, descriptionStart - toolStart, tool.length, SliceKind.TEXT)
+                : LazyText.of("");
+            LazyText inputSchema = schemaStart >= 0
+                ? new BodySlice(tool, schemaStart - toolStart, schemaEnd - toolStart, SliceKind.PRETTY_JSON)
+                : LazyText.of("");
+
+            toolsMessage.addContent(internPool.intern(ToolDefinitionContent.class, toolHash, toolEnd - toolStart,
+                new ToolDefinitionContent(name, description, inputSchema)));
+        }
+
+        return toolsMessage;
+    }
+
+    private void parseMessages(JsonParser parser, Source source, List<ConversationMessage> turns) throws IOException {
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            if (parser.currentToken() != JsonToken.START_OBJECT) {
+                parser.skipChildren();
+                continue;
+            }
+
+            int messageStart = source.offsetOf(parser.currentTokenLocation());
+            String role = "unknown";
+            List<ContentItem> items = new ArrayList<>();
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+
+                if ("role".equals(field)) {
+                    role = readText(parser);
+                } else if ("content".equals(field)) {
+                    if (value == JsonToken.START_ARRAY) {
+                        while (parser.nextToken() != JsonToken.END_ARRAY) {
+                            ContentItem item = parseContentItem(parser, source);
+                            if (item != null) {
+                                items.add(item);
+                            }
+                        }
+                    } else if (value == JsonToken.VALUE_STRING) {
+                        items.add(new TextContent(parser.getText()));
+                    } else {
+                        parser.skipChildren();
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+
+            // Role may appear after content, so the message is built once the object is closed
+            ConversationMessage message = new ConversationMessage(role);
+            for (ContentItem item : items) {
+                message.addContent(item);
+            }
+            message.setContentHash(source.hash(messageStart, parser));
+            turns.add(message);
+        }
+    }
+
+    /**
+     * Parses one content block object. The parser must be positioned on the block's first token;
+     * on return it is positioned on the block's last token. Returns null for unsupported blocks.
+     */
+    private ContentItem parseContentItem(JsonParser parser, Source source) throws IOException {
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return null;
+        }
+
+        String type = null;
+        String text = null;
+        String id = null;
+        String name = null;
+        String input = null;
+        String toolUseId = null;
+        int contentStart = -1;
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            int fieldStart = fieldStart(parser, source, field);
+            JsonToken value = parser.nextToken();
+
+            switch (field) {
+                case "type":
+                    type = readText(parser);
+                    break;
+                case "text":
+                    text = readText(parser);
+                    break;
+                case "id":
+                    id = readText(parser);
+                    break;
+                case "name":
+                    name = readText(parser);
+                    break;
+                case "input":
+                    input = copyStructure(parser, false);
+                    break;
+                case "tool_use_id":
+                    toolUseId = readText(parser);
+                    break;
+                case "content":
+                    // Tool output is decoded on demand from the body slice
+                    contentStart = source.offsetOf(parser.currentTokenLocation());
+                    parser.skipChildren();
+                    break;
+                case "cache_control":
+                    parser.skipChildren();
+                    source.exclude(fieldStart, source.offsetOf(parser.currentLocation()));
+                    break;
+                default:
+                    parser.skipChildren();
+                    break;
+            }
+        }
+
+        if (type == null) {
+            return text != null ? new TextContent(text) : null;
+        }
+
+        switch (type) {
+            case "text":
+                return text != null ? new TextContent(text) : null;
+            case "tool_use":
+                return new ToolCallContent(
+                    id != null ? id : "unknown",
+                    name != null ? name : "unknown",
+                    input != null ? input : "{}"
+                );
+            case "tool_result":
+                LazyText content = contentStart >= 0
+                    ? new BodySlice(source.body, contentStart, source.offsetOf(parser.currentLocation()), SliceKind.TEXT)
+                    : LazyText.of("");
+                return new ToolResultContent(toolUseId != null ? toolUseId : "unknown", content);
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Returns the offset of the current field name if the field is left out of message hashes, else -1.
+     */
+    private static int fieldStart(JsonParser parser, Source source, String field) {
+        return "cache_control".equals(field) ? source.offsetOf(parser.currentTokenLocation()) : -1;
+    }
+
+    /**
+     * Reads the current scalar as text. Containers are skipped and read as empty.
+     */
+    private static String readText(JsonParser parser) throws IOException {
+        JsonToken token = parser.currentToken();
+        if (token == JsonToken.START_OBJECT || token == JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return "";
+        }
+        if (token == JsonToken.VALUE_NULL) {
+            return "";
+        }
+        return parser.getText();
+    }
+
+    /**
+     * Joins the text of an array of content blocks, as used by tool_result content.
+     */
+    private String readTextBlocks(JsonParser parser, Source source) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            ContentItem item = parseContentItem(parser, source);
+            if (item instanceof TextContent) {
+                if (sb.length() > 0) {
+                    sb.append("\n");
+                }
+                sb.append(item.getDisplayText());
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Re-serializes the current value (and its children) to a JSON string.
+     */
+    private String copyStructure(JsonParser parser, boolean pretty) throws IOException {
+        StringWriter writer = new StringWriter();
+        try (JsonGenerator generator = factory.createGenerator(writer)) {
+            if (pretty) {
+                generator.useDefaultPrettyPrinter();
+            }
+            generator.copyCurrentStructure(parser);
+        }
+        return writer.toString();
+    }
+
+    private interface MessageParser {
+        ConversationMessage parse(JsonParser parser, Source source, JsonToken value) throws IOException;
+    }
+
+    private enum SliceKind {
+        // A JSON string, or an array of text blocks whose text is joined
+        TEXT,
+        // Any JSON value, re-serialized with the default pretty printer
+        PRETTY_JSON
+    }
+
+    /**
+     * The body being parsed and the offset the parser's byte locations are relative to.
+     * Also collects the byte ranges of fields that are left out of message hashes, in body order.
+     */
+    private static class Source {
+        public final byte[] body;
+        public final int base;
+        private int[] excludedStarts = new int[4];
+        private int[] excludedEnds = new int[4];
+        private int excludedCount;
+
+        public Source(byte[] body, int base) {
+            this.body = body;
+            this.base = base;
+        }
+
+        public int offsetOf(JsonLocation location) {
+            return base + (int) location.getByteOffset();
+        }
+
+        /**
+         * Leaves the field from start (its name) to end (after its value) out of hashes, together
+         * with one separating comma so the object hashes as if the field was never there.
+         */
+        public void exclude(int start, int end) {
+            int before = start - 1;
+            while (before >= 0 && isWhitespace(body[before])) {
+                before--;
+            }
+            if (before >= 0 && body[before] == ',') {
+                start = before;
+            } else {
+                int after = end;
+                while (after < body.length && isWhitespace(body[after])) {
+                    after++;
+                }
+                if (after < body.length && body[after] == ',') {
+                    after++;
+                    while (after < body.length && isWhitespace(body[after])) {
+                        after++;
+                    }
+                    end = after;
+                }
+            }
+
+            if (excludedCount == excludedStarts.length) {
+                excludedStarts = Arrays.copyOf(excludedStarts, excludedCount * 2);
+                excludedEnds = Arrays.copyOf(excludedEnds, excludedCount * 2);
+            }
+            excludedStarts[excludedCount] = start;
+            excludedEnds[excludedCount] = end;
+            excludedCount++;
+        }
+
+        /**
+         * Hashes the bytes from start to the end of the value the parser is positioned on,
+         * leaving out excluded fields.
+         */
+        public long hash(int start, JsonParser parser) {
+            int end = offsetOf(parser.currentLocation());
+
+            int first = 0;
+            while (first < excludedCount && excludedStarts[first] < start) {
+                first++;
+            }
+            if (first == excludedCount || excludedStarts[first] >= end) {
+                return Hashing.hash64(body, start, end - start);
+            }
+
+            // Rare: copy the remaining bytes so the hash matches that of the source without the fields
+            byte[] kept = new byte[end - start];
+            int length = 0;
+            int position = start;
+            for (int i = first; i < excludedCount && excludedStarts[i] < end; i++) {
+                int keptEnd = excludedStarts[i];
+                System.arraycopy(body, position, kept, length, keptEnd - position);
+                length += keptEnd - position;
+                position = Math.min(end, excludedEnds[i]);
+            }
+            System.arraycopy(body, position, kept, length, end - position);
+            length += end - position;
+            return Hashing.hash64(kept, 0, length);
+        }
+
+        private static boolean isWhitespace(byte b) {
+            return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+        }
+    }
+
+    /**
+     * Lazily decoded value that starts at a given offset of the request body.
+     * The slice may extend past the value; only its first value is read.
+     */
+    private class BodySlice extends LazyText {
+        private final byte[] body;
+        private final int start;
+        private final int end;
+        private final SliceKind kind;
+
+        public BodySlice(byte[] body, int start, int end, SliceKind kind) {
+            this.body = body;
+            this.start = start;
+            this.end = end;
+            this.kind = kind;
+        }
+
+        @Override
+        protected String materialize() {
+            try (JsonParser parser = factory.createParser(body, start, end - start)) {
+                JsonToken token = parser.nextToken();
+                if (kind == SliceKind.PRETTY_JSON) {
+                    return copyStructure(parser, true);
+                }
+                if (token == JsonToken.START_ARRAY) {
+                    return readTextBlocks(parser, new Source(body, start));
+                }
+                return readText(parser);
+            } catch (IOException e) {
+                return "";
+            }
+        }
+    }
+}
@@ -0,0 +1,456 @@
+package providers;
+
+import burp.api.montoya.core.ByteArray;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import core.ContentItem;
+import core.ConversationMessage;
+import core.Hashing;
+import core.TextContent;
+import core.ToolCallContent;
+import core.Usage;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Decoder for Claude streaming (Server-Sent Events) responses.
+ * Scans lines in place over the body bytes and reads only the event fields it needs,
+ * accumulating block content in builders so decoding stays linear in the body size.
+ * The model and input token usage are taken from message_start, and the stop reason and
+ * output token usage from message_delta.
+ *
+ * A decoder is resumable: it remembers how many bytes of the body it has consumed and
+ * which blocks are still open, so a growing response only costs the newly arrived bytes.
+ * It only resumes a body that starts with the same bytes, which include the unique message id of
+ * message_start, and whose last consumed bytes match, so the check costs the same for any body size.
+ * Callers must synchronize on the decoder when sharing it between threads.
+ */
+public class ClaudeSSEDecoder {
+    private static final byte[] DATA_FIELD = "data:".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] EVENT_FIELD = "event:".getBytes(StandardCharsets.US_ASCII);
+    // Consumed bytes checked at each end before a body is resumed
+    private static final int RESUME_WINDOW = 1024;
+
+    private final JsonFactory factory;
+    private final Map<Integer, ContentBlock> activeBlocks = new LinkedHashMap<>();
+    private final List<ContentItem> completedItems = new ArrayList<>();
+
+    // Reused across events to collect delta text before it is appended to its block
+    private final StringBuilder deltaText = new StringBuilder();
+    // Reused across events to collect message metadata before it is applied
+    private final Metadata eventMetadata = new Metadata();
+    private final Metadata metadata = new Metadata();
+
+    private int consumed;
+    // The first consumed bytes, up to RESUME_WINDOW
+    private byte[] head = new byte[0];
+    // Hash of the last consumed bytes from tailStart, up to RESUME_WINDOW of the latest update
+    private int tailStart;
+    private long tailHash;
+
+    public ClaudeSSEDecoder(JsonFactory factory) {
+        this.factory = factory;
+    }
+
+    /**
+     * Checks whether a body looks like an SSE stream by peeking at its first non-whitespace bytes.
+     */
+    public static boolean isEventStream(byte[] body) {
+        int start = 0;
+        while (start < body.length && isWhitespace(body[start])) {
+            start++;
+        }
+        return startsWith(body, start, DATA_FIELD) || startsWith(body, start, EVENT_FIELD);
+    }
+
+    /**
+     * Decodes a complete SSE body into an assistant message.
+     */
+    public ConversationMessage decode(byte[] body) {
+        int used = feed(body, 0, body.length);
+        addChunk(body, 0, used);
+        return snapshot();
+    }
+
+    /**
+     * Checks whether the given body extends the bytes this decoder has already consumed.
+     */
+    public boolean canResume(ByteArray body) {
+        if (body.length() < consumed) {
+            return false;
+        }
+        if (consumed == 0) {
+            return true;
+        }
+
+        // Another response of the same request differs in the message id at the head; the same
+        // response must still end with the bytes the last update consumed
+        if (!Arrays.equals(head, body.subArray(0, head.length).getBytes())) {
+            return false;
+        }
+        return tailHash == Hashing.hash64(body.subArray(tailStart, consumed).getBytes());
+    }
+
+    /**
+     * Consumes the bytes that arrived since the last update. Only the new tail of the body
+     * is copied out of the Montoya byte array. The body must extend the consumed bytes,
+     * as checked by {@link #canResume(ByteArray)}.
+     */
+    public void update(ByteArray body) {
+        int length = body.length();
+        if (length <= consumed) {
+            return;
+        }
+
+        byte[] chunk = body.subArray(consumed, length).getBytes();
+        addChunk(chunk, 0, feed(chunk, 0, chunk.length));
+    }
+
+    /**
+     * Returns the message decoded so far. Blocks that have not been stopped yet are included
+     * with the content received up to now.
+     */
+    public ConversationMessage snapshot() {
+        ConversationMessage message = new ConversationMessage(ConversationMessage.Role.ASSISTANT);
+        if (metadata.present) {
+            message.setUsage(metadata.toUsage());
+        }
+        for (ContentItem item : completedItems) {
+            message.addContent(item);
+        }
+        for (ContentBlock block : activeBlocks.values()) {
+            ContentItem item = toContentItem(block);
+            if (item != null) {
+                message.addContent(item);
+            }
+        }
+        return message;
+    }
+
+    /**
+     * Returns the number of body bytes consumed so far.
+     */
+    public int getConsumed() {
+        return consumed;
+    }
+
+    /**
+     * Decodes every complete line in the range and returns how many bytes were consumed.
+     * A trailing line without a newline is only consumed if it decodes as a complete event,
+     * otherwise it is left for the next update.
+     */
+    private int feed(byte[] body, int offset, int end) {
+        int lineStart = offset;
+
+        while (lineStart < end) {
+            int lineEnd = lineStart;
+            while (lineEnd < end && body[lineEnd] != '\n') {
+                lineEnd++;
+            }
+
+            if (lineEnd == end) {
+                if (decodeLine(body, lineStart, lineEnd)) {
+                    lineStart = end;
+                }
+                break;
+            }
+
+            decodeLine(body, lineStart, lineEnd);
+            lineStart = lineEnd + 1;
+        }
+
+        return lineStart - offset;
+    }
+
+    /**
+     * Decodes one line. Returns true if the line held a complete data event.
+     */
+    private boolean decodeLine(byte[] body, int start, int end) {
+        // Trim the line in place
+        while (start < end && isWhitespace(body[start])) {
+            start++;
+        }
+        while (end > start && isWhitespace(body[end - 1])) {
+            end--;
+        }
+
+        if (end - start < DATA_FIELD.length || !startsWith(body, start, DATA_FIELD)) {
+            return false;
+        }
+
+        int jsonStart = start + DATA_FIELD.length;
+        while (jsonStart < end && isWhitespace(body[jsonStart])) {
+            jsonStart++;
+        }
+        if (jsonStart == end) {
+            return false;
+        }
+
+        try {
+            decodeEvent(body, jsonStart, end);
+            return true;
+        } catch (Exception e) {
+            // Skip invalid JSON lines
+            return false;
+        }
+    }
+
+    private void decodeEvent(byte[] body, int start, int end) throws IOException {
+        try (JsonParser parser = factory.createParser(body, start, end - start)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("SSE data is not a JSON object");
+            }
+
+            String eventType = "";
+            int index = 0;
+            ContentBlock startedBlock = null;
+            boolean hasDelta = false;
+            deltaText.setLength(0);
+            eventMetadata.reset();
+
+            // Read the whole event before applying it, so a truncated line leaves no partial state
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+
+                if ("type".equals(field)) {
+                    eventType = parser.getText();
+                } else if ("index".equals(field)) {
+                    index = parser.getValueAsInt();
+                } else if ("content_block".equals(field) && value == JsonToken.START_OBJECT) {
+                    startedBlock = readContentBlock(parser);
+                } else if ("delta".equals(field) && value == JsonToken.START_OBJECT) {
+                    readDelta(parser);
+                    hasDelta = true;
+                } else if ("message".equals(field) && value == JsonToken.START_OBJECT) {
+                    readMessage(parser);
+                } else if ("usage".equals(field) && value == JsonToken.START_OBJECT) {
+                    readUsage(parser);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+
+            if (parser.currentToken() != JsonToken.END_OBJECT) {
+                throw new IOException("Truncated SSE event");
+            }
+
+            if ("content_block_start".equals(eventType)) {
+                if (startedBlock != null) {
+                    activeBlocks.put(index, startedBlock);
+                }
+            } else if ("content_block_delta".equals(eventType)) {
+                ContentBlock block = activeBlocks.get(index);
+                if (block != null && hasDelta) {
+                    block.content.append(deltaText);
+                }
+            } else if ("content_block_stop".equals(eventType)) {
+                ContentBlock block = activeBlocks.remove(index);
+                if (block != null) {
+                    ContentItem item = toContentItem(block);
+                    if (item != null) {
+                        completedItems.add(item);
+                    }
+                }
+            } else if ("message_start".equals(eventType) || "message_delta".equals(eventType)) {
+                metadata.apply(eventMetadata);
+            }
+        }
+    }
+
+    private ContentBlock readContentBlock(JsonParser parser) throws IOException {
+        String type = "";
+        String id = "";
+        String name = "";
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+
+            if (value != JsonToken.VALUE_STRING) {
+                parser.skipChildren();
+            } else if ("type".equals(field)) {
+                type = parser.getText();
+            } else if ("id".equals(field)) {
+                id = parser.getText();
+            } else if ("name".equals(field)) {
+                name = parser.getText();
+            }
+        }
+
+        ContentBlock block = new ContentBlock(type);
+        if ("tool_use".equals(type)) {
+            block.toolId = id;
+            block.toolName = name;
+        }
+        return block;
+    }
+
+    private void readDelta(JsonParser parser) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+
+            if (value == JsonToken.VALUE_STRING
+                && ("partial_json".equals(field) || "text".equals(field) || "thinking".equals(field))) {
+                deltaText.append(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+            } else if (value == JsonToken.VALUE_STRING && "stop_reason".equals(field)) {
+                eventMetadata.stopReason = parser.getText();
+                eventMetadata.present = true;
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    /**
+     * Reads the message object of a message_start event, skipping its (empty) content.
+     */
+    private void readMessage(JsonParser parser) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+
+            if (value == JsonToken.VALUE_STRING && "model".equals(field)) {
+                eventMetadata.model = parser.getText();
+                eventMetadata.present = true;
+            } else if (value == JsonToken.VALUE_STRING && "stop_reason".equals(field)) {
+                eventMetadata.stopReason = parser.getText();
+                eventMetadata.present = true;
+            } else if (value == JsonToken.START_OBJECT && "usage".equals(field)) {
+                readUsage(parser);
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    private void readUsage(JsonParser parser) throws IOException {
+        eventMetadata.present = true;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+
+            if (value != JsonToken.VALUE_NUMBER_INT) {
+                parser.skipChildren();
+            } else if ("input_tokens".equals(field)) {
+                eventMetadata.inputTokens = parser.getLongValue();
+            } else if ("output_tokens".equals(field)) {
+                eventMetadata.outputTokens = parser.getLongValue();
+            } else if ("cache_creation_input_tokens".equals(field)) {
+                eventMetadata.cacheCreationInputTokens = parser.getLongValue();
+            } else if ("cache_read_input_tokens".equals(field)) {
+                eventMetadata.cacheReadInputTokens = parser.getLongValue();
+            }
+        }
+    }
+
+    private static ContentItem toContentItem(ContentBlock block) {
+        if ("text".equals(block.type)) {
+            return new TextContent(block.content.toString());
+        } else if ("tool_use".equals(block.type)) {
+            return new ToolCallContent(block.toolId, block.toolName, block.content.toString());
+        }
+        return null;
+    }
+
+    /**
+     * Records bytes that were just consumed.
+     */
+    private void addChunk(byte[] chunk, int offset, int length) {
+        if (length == 0) return;
+
+        if (head.length < RESUME_WINDOW) {
+            int headLength = head.length;
+            head = Arrays.copyOf(head, headLength + Math.min(RESUME_WINDOW - headLength, length));
+            System.arraycopy(chunk, offset, head, headLength, head.length - headLength);
+        }
+
+        int tailLength = Math.min(length, RESUME_WINDOW);
+        tailStart = consumed + length - tailLength;
+        tailHash = Hashing.hash64(chunk, offset + length - tailLength, tailLength);
+        consumed += length;
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t' || b == '\r' || b == '\n';
+    }
+
+    private static boolean startsWith(byte[] body, int offset, byte[] prefix) {
+        if (body.length - offset < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (body[offset + i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Model, stop reason and token counts of the message. Counts are -1 until reported; later
+     * events only override what they report, since message_delta carries cumulative counts.
+     */
+    private static class Metadata {
+        public boolean present;
+        public String model;
+        public String stopReason;
+        public long inputTokens;
+        public long outputTokens;
+        public long cacheCreationInputTokens;
+        public long cacheReadInputTokens;
+
+        public Metadata() {
+            reset();
+        }
+
+        public void reset() {
+            present = false;
+            model = null;
+            stopReason = null;
+            inputTokens = -1;
+            outputTokens = -1;
+            cacheCreationInputTokens = -1;
+            cacheReadInputTokens = -1;
+        }
+
+        public void apply(Metadata event) {
+            if (!event.present) return;
+
+            present = true;
+            if (event.model != null) model = event.model;
+            if (event.stopReason != null) stopReason = event.stopReason;
+            if (event.inputTokens >= 0) inputTokens = event.inputTokens;
+            if (event.outputTokens >= 0) outputTokens = event.outputTokens;
+            if (event.cacheCreationInputTokens >= 0) cacheCreationInputTokens = event.cacheCreationInputTokens;
+            if (event.cacheReadInputTokens >= 0) cacheReadInputTokens = event.cacheReadInputTokens;
+        }
+
+        public Usage toUsage() {
+            return new Usage(model, stopReason, Math.max(0, inputTokens), Math.max(0, outputTokens),
+                Math.max(0, cacheCreationInputTokens), Math.max(0, cacheReadInputTokens), true);
+        }
+    }
+
+    /**
+     * Content block that is still receiving deltas.
+     */
+    private static class ContentBlock {
+        public final String type;
+        public final StringBuilder content = new StringBuilder();
+        public String toolName;
+        public String toolId;
+
+        public ContentBlock(String type) {
+            this.type = type;
+        }
+    }
+}
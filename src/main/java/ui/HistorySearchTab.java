@@ -0,0 +1,688 @@
+package ui;
+
+import burp.api.montoya.http.message.HttpRequestResponse;
+import burp.api.montoya.http.message.responses.HttpResponse;
+import burp.api.montoya.proxy.ProxyHttpRequestResponse;
+import core.*;
+import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.table.AbstractTableModel;
+import javax.swing.tree.DefaultMutableTreeNode;
+import javax.swing.tree.DefaultTreeModel;
+import javax.swing.tree.TreeSelectionModel;
+import java.awt.*;
+import java.awt.event.HierarchyEvent;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Suite tab that searches the LLM traffic of the whole proxy history and groups it into sessions.
+ * Items are indexed on a low-priority background thread from the time the extension is loaded, and
+ * new items are picked up as they arrive. The tab's lists and statistics are only refreshed while it
+ * is visible. Selecting a result shows the item's conversation at the match.
+ * In the session tree, each request follows the one it extends; requests that branch off an
+ * earlier request are nested under it. The index is saved after each indexing run and reused
+ * on the next start if the history still begins with the same items.
+ */
+public class HistorySearchTab {
+    // Seconds between checks for new proxy history items
+    private static final int POLL_INTERVAL_SECONDS = 10;
+    // Indexed items between status updates
+    private static final int STATUS_INTERVAL = 200;
+    private static final int MAX_RESULTS = 1000;
+    private static final int SEARCH_DELAY_MILLIS = 150;
+
+    private final Supplier<List<ProxyHttpRequestResponse>> history;
+    // Where the index is saved, or null to keep it in memory only
+    private final HistoryStore store;
+    private final HistoryIndex index = new HistoryIndex();
+    private final SessionBuilder sessions = new SessionBuilder();
+    private final UsageTotals usageTotals = new UsageTotals();
+    private final LatencyStats latencyStats = new LatencyStats();
+    private final ScheduledExecutorService indexer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "LLM history indexer");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+
+    private final JPanel panel;
+    private final JTextField queryField;
+    private final JLabel statusLabel;
+    private final ResultsModel resultsModel = new ResultsModel();
+    private final JTable resultsTable;
+    private final DefaultMutableTreeNode sessionRoot = new DefaultMutableTreeNode();
+    private final DefaultTreeModel sessionModel = new DefaultTreeModel(sessionRoot);
+    private final JTree sessionTree;
+    // Tree node of each request node shown so far; EDT only
+    private final Map<Integer, DefaultMutableTreeNode> treeNodes = new HashMap<>();
+    // Request nodes added by the indexer and not yet shown in the tree
+    private final List<SessionBuilder.Node> pendingNodes = new ArrayList<>();
+    private final UsageModel modelUsageModel = new UsageModel("Model");
+    private final UsageModel sessionUsageModel = new UsageModel("Session");
+    private final LatencyModel modelLatencyModel = new LatencyModel("Model");
+    private final LatencyModel sessionLatencyModel = new LatencyModel("Session");
+    private final JScrollPane viewerScrollPane;
+    private final ParseScheduler parseScheduler = new ParseScheduler();
+    private final MessageComponentPool componentPool = new MessageComponentPool();
+    private VirtualMessageList currentList;
+
+    // Written by the indexer thread
+    private volatile List<ProxyHttpRequestResponse> items = new ArrayList<>();
+    private volatile boolean visible;
+    private boolean restored;
+    private int nextItem;
+    // Request body hash of each indexed item, for checking a saved index against the history
+    private long[] bodyHashes = new long[1024];
+
+    public HistorySearchTab(Supplier<List<ProxyHttpRequestResponse>> history, HistoryStore store) {
+        this.history = history;
+        this.store = store;
+
+        panel = new JPanel(new BorderLayout());
+        panel.setBackground(UIManager.getColor("Panel.background"));
+
+        queryField = new JTextField();
+        statusLabel = new JLabel("Not indexed yet");
+        statusLabel.setForeground(UIManager.getColor("Label.disabledForeground"));
+
+        JPanel searchPanel = new JPanel(new BorderLayout(5, 0));
+        searchPanel.setBackground(UIManager.getColor("Panel.background"));
+        searchPanel.setBorder(BorderFactory.createEmptyBorder(5, 5, 5, 5));
+        searchPanel.add(new JLabel("Search LLM traffic:"), BorderLayout.WEST);
+        searchPanel.add(queryField, BorderLayout.CENTER);
+        searchPanel.add(statusLabel, BorderLayout.EAST);
+
+        resultsTable = new JTable(resultsModel);
+        resultsTable.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        resultsTable.setAutoResizeMode(JTable.AUTO_RESIZE_LAST_COLUMN);
+        resultsTable.getColumnModel().getColumn(0).setPreferredWidth(60);
+        resultsTable.getColumnModel().getColumn(1).setPreferredWidth(80);
+        resultsTable.getColumnModel().getColumn(2).setPreferredWidth(70);
+        resultsTable.getColumnModel().getColumn(3).setPreferredWidth(800);
+        resultsTable.getSelectionModel().addListSelectionListener(e -> {
+            if (!e.getValueIsAdjusting()) {
+                showSelectedResult();
+            }
+        });
+
+        sessionTree = new JTree(sessionModel);
+        sessionTree.setRootVisible(false);
+        sessionTree.setShowsRootHandles(true);
+        sessionTree.getSelectionModel().setSelectionMode(TreeSelectionModel.SINGLE_TREE_SELECTION);
+        sessionTree.addTreeSelectionListener(e -> showSelectedRequest());
+
+        JTabbedPane listsPane = new JTabbedPane();
+        listsPane.addTab("Search results", new JScrollPane(resultsTable));
+        listsPane.addTab("Sessions", new JScrollPane(sessionTree));
+        listsPane.addTab("Token usage", createStatsPanel(modelUsageModel, sessionUsageModel));
+        listsPane.addTab("Latency", createStatsPanel(modelLatencyModel, sessionLatencyModel));
+
+        viewerScrollPane = new JScrollPane();
+        viewerScrollPane.getVerticalScrollBar().setUnitIncrement(16);
+        viewerScrollPane.setBackground(UIManager.getColor("Panel.background"));
+
+        JSplitPane splitPane = new JSplitPane(JSplitPane.VERTICAL_SPLIT, listsPane, viewerScrollPane);
+        splitPane.setResizeWeight(0.4);
+
+        panel.add(searchPanel, BorderLayout.NORTH);
+        panel.add(splitPane, BorderLayout.CENTER);
+
+        // Wait for a pause in typing before searching
+        Timer searchTimer = new Timer(SEARCH_DELAY_MILLIS, e -> search());
+        searchTimer.setRepeats(false);
+        queryField.getDocument().addDocumentListener(new DocumentListener() {
+            public void insertUpdate(DocumentEvent e) { searchTimer.restart(); }
+            public void removeUpdate(DocumentEvent e) { searchTimer.restart(); }
+            public void changedUpdate(DocumentEvent e) { searchTimer.restart(); }
+        });
+        queryField.addActionListener(e -> {
+            searchTimer.stop();
+            search();
+        });
+
+        // Only refresh the lists while someone is looking at the tab; catch up when it is shown
+        panel.addHierarchyListener(e -> {
+            if ((e.getChangeFlags() & HierarchyEvent.SHOWING_CHANGED) != 0) {
+                visible = panel.isShowing();
+                if (visible) {
+                    indexer.execute(() -> updateStatus(items.size()));
+                }
+            }
+        });
+    }
+
+    /**
+     * Starts indexing the proxy history in the background, e.g. when the extension is loaded.
+     */
+    public void start() {
+        indexer.scheduleWithFixedDelay(this::indexNewItems, 0, POLL_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    public Component getComponent() {
+        return panel;
+    }
+
+    /**
+     * Stops the indexer, e.g. when the extension is unloaded.
+     */
+    public void shutdown() {
+        indexer.shutdownNow();
+    }
+
+    /**
+     * Indexes the proxy history items added since the last run. Runs on the indexer thread.
+     */
+    private void indexNewItems() {
+        List<ProxyHttpRequestResponse> snapshot;
+        try {
+            snapshot = history.get();
+        } catch (Exception e) {
+            return;
+        }
+        if (!restored) {
+            restored = true;
+            restore(snapshot);
+        }
+        if (snapshot.size() <= nextItem) return;
+        items = snapshot;
+
+        LLMProviderRegistry registry = LLMProviderRegistry.getInstance();
+        for (; nextItem < snapshot.size(); nextItem++) {
+            if (Thread.currentThread().isInterrupted()) return;
+
+            ProxyHttpRequestResponse item = snapshot.get(nextItem);
+            if (nextItem == bodyHashes.length) {
+                bodyHashes = Arrays.copyOf(bodyHashes, nextItem * 2);
+            }
+            bodyHashes[nextItem] = bodyHash(item);
+
+            try {
+                HttpRequestResponse requestResponse = HttpRequestResponse.httpRequestResponse(
+                    item.finalRequest(), item.originalResponse());
+                Optional<LLMProvider> provider = registry.findProvider(requestResponse);
+                if (provider.isPresent()) {
+                    List<ConversationMessage> messages = provider.get().parseRequest(requestResponse);
+                    SessionBuilder.Node node = sessions.addItem(nextItem, messages);
+                    synchronized (pendingNodes) {
+                        pendingNodes.add(node);
+                    }
+                    ConversationMessage response = requestResponse.response() != null
+                        ? provider.get().parseCompleteResponse(requestResponse) : null;
+                    index.addItem(nextItem, withResponse(requestResponse, messages, response));
+                    Usage usage = response != null ? response.getUsage() : null;
+                    if (usage != null) {
+                        usageTotals.add(usage, node.session);
+                    }
+                    Latency latency = response != null ? Latency.of(item.timingData(), usage) : null;
+                    if (latency != null) {
+                        latencyStats.add(usage != null ? usage.getModel() : null, node.session, latency);
+                    }
+                }
+            } catch (Exception e) {
+                // Skip items that can't be parsed
+            }
+
+            if (nextItem % STATUS_INTERVAL == 0) {
+                updateStatus(snapshot.size());
+            }
+        }
+        updateStatus(snapshot.size());
+
+        if (store != null) {
+            try {
+                store.save(Arrays.copyOf(bodyHashes, nextItem), index, sessions, usageTotals, latencyStats);
+            } catch (IOException e) {
+                // Keep the index in memory only; saving is retried after the next run
+            }
+        }
+    }
+
+    /**
+     * Loads the saved index if every item it covers is still at the same place in the history.
+     * Otherwise the history is indexed from the start.
+     */
+    private void restore(List<ProxyHttpRequestResponse> snapshot) {
+        if (store == null) return;
+
+        long[] saved = store.load(index, sessions, usageTotals, latencyStats);
+        if (saved == null) return;
+
+        boolean valid = saved.length <= snapshot.size();
+        for (int i = 0; i < saved.length && valid; i++) {
+            valid = saved[i] == bodyHash(snapshot.get(i));
+        }
+        if (!valid) {
+            index.clear();
+            sessions.clear();
+            usageTotals.clear();
+            latencyStats.clear();
+            return;
+        }
+
+        bodyHashes = Arrays.copyOf(saved, Math.max(saved.length, bodyHashes.length));
+        nextItem = saved.length;
+        items = snapshot;
+        synchronized (pendingNodes) {
+            pendingNodes.addAll(sessions.getNodes());
+        }
+        updateStatus(snapshot.size());
+    }
+
+    private static long bodyHash(ProxyHttpRequestResponse item) {
+        try {
+            return Hashing.fingerprint(item.finalRequest().body());
+        } catch (Exception e) {
+            // Items whose request is unavailable all hash the same
+            return 0;
+        }
+    }
+
+    /**
+     * Returns the request's messages followed by the response message, if any. The response is
+     * given a hash of its body so it can be recognized like the request messages.
+     */
+    private static List<ConversationMessage> withResponse(HttpRequestResponse requestResponse,
+                                                          List<ConversationMessage> requestMessages,
+                                                          ConversationMessage response) {
+        List<ConversationMessage> messages = new ArrayList<>(requestMessages);
+        if (response != null && response.hasContent()) {
+            response.setContentHash(responseHash(requestResponse.response()));
+            messages.add(response);
+        }
+        return messages;
+    }
+
+    private static long responseHash(HttpResponse response) {
+        return Hashing.hash64(response.body().getBytes());
+    }
+
+    /**
+     * Shows the indexing progress and the sessions and statistics added since the last update.
+     * Does nothing while the tab is hidden. Runs on the indexer thread.
+     */
+    private void updateStatus(int historySize) {
+        if (!visible) return;
+
+        int indexed = nextItem;
+        int llmItems = index.getItemCount();
+        int messages = index.getMessageCount();
+        int sessionCount = sessions.getSessionCount();
+        List<SessionBuilder.Node> added;
+        synchronized (pendingNodes) {
+            added = new ArrayList<>(pendingNodes);
+            pendingNodes.clear();
+        }
+        SwingUtilities.invokeLater(() -> {
+            addToSessionTree(added);
+            updateStats();
+            statusLabel.setText(String.format("%,d LLM requests in %,d sessions, %,d unique messages (%,d of %,d items indexed)",
+                llmItems, sessionCount, messages, indexed, historySize));
+        });
+    }
+
+    /**
+     * Returns sortable tables of per-model statistics above per-session statistics.
+     */
+    private static JComponent createStatsPanel(AbstractTableModel modelStats, AbstractTableModel sessionStats) {
+        JTable modelTable = new JTable(modelStats);
+        JTable sessionTable = new JTable(sessionStats);
+        for (JTable table : new JTable[]{modelTable, sessionTable}) {
+            table.setAutoCreateRowSorter(true);
+            table.getColumnModel().getColumn(0).setPreferredWidth(400);
+        }
+
+        JSplitPane statsPane = new JSplitPane(JSplitPane.VERTICAL_SPLIT,
+            new JScrollPane(modelTable), new JScrollPane(sessionTable));
+        statsPane.setResizeWeight(0.3);
+        return statsPane;
+    }
+
+    /**
+     * Shows the current usage totals and latency percentiles. Runs on the EDT.
+     */
+    private void updateStats() {
+        List<String> modelLabels = new ArrayList<>();
+        List<UsageTotals.Total> modelTotals = usageTotals.getModelTotals();
+        for (UsageTotals.Total total : modelTotals) {
+            modelLabels.add(total.model);
+        }
+        modelUsageModel.setTotals(modelLabels, modelTotals);
+
+        List<String> sessionLabels = new ArrayList<>();
+        List<UsageTotals.Total> sessionTotals = new ArrayList<>();
+        for (Map.Entry<Integer, UsageTotals.Total> entry : usageTotals.getSessionTotals().entrySet()) {
+            SessionBuilder.Node node = sessions.getNode(entry.getKey());
+            sessionLabels.add(new SessionEntry(node).toString());
+            sessionTotals.add(entry.getValue());
+        }
+        sessionUsageModel.setTotals(sessionLabels, sessionTotals);
+
+        List<String> modelLatencyLabels = new ArrayList<>();
+        List<LatencyStats.Percentiles> modelPercentiles = latencyStats.getModelPercentiles();
+        for (LatencyStats.Percentiles percentiles : modelPercentiles) {
+            modelLatencyLabels.add(percentiles.model);
+        }
+        modelLatencyModel.setPercentiles(modelLatencyLabels, modelPercentiles);
+
+        List<String> sessionLatencyLabels = new ArrayList<>();
+        List<LatencyStats.Percentiles> sessionPercentiles = new ArrayList<>();
+        for (Map.Entry<Integer, LatencyStats.Percentiles> entry : latencyStats.getSessionPercentiles().entrySet()) {
+            sessionLatencyLabels.add(new SessionEntry(sessions.getNode(entry.getKey())).toString());
+            sessionPercentiles.add(entry.getValue());
+        }
+        sessionLatencyModel.setPercentiles(sessionLatencyLabels, sessionPercentiles);
+    }
+
+    /**
+     * Adds request nodes to the session tree. A request that continues its parent's line is
+     * placed after the parent; one that branches off it is placed under the parent.
+     */
+    private void addToSessionTree(List<SessionBuilder.Node> added) {
+        for (SessionBuilder.Node node : added) {
+            DefaultMutableTreeNode container;
+            if (node.parent == null) {
+                container = new DefaultMutableTreeNode(new SessionEntry(node));
+                sessionModel.insertNodeInto(container, sessionRoot, sessionRoot.getChildCount());
+            } else if (node.continuation) {
+                container = (DefaultMutableTreeNode) treeNodes.get(node.parent.id).getParent();
+            } else {
+                container = treeNodes.get(node.parent.id);
+            }
+
+            DefaultMutableTreeNode treeNode = new DefaultMutableTreeNode(new RequestEntry(node));
+            sessionModel.insertNodeInto(treeNode, container, container.getChildCount());
+            treeNodes.put(node.id, treeNode);
+        }
+    }
+
+    private void search() {
+        String query = queryField.getText();
+        long start = System.nanoTime();
+        List<HistoryIndex.Hit> hits = index.search(query, MAX_RESULTS);
+        long micros = (System.nanoTime() - start) / 1000;
+
+        resultsModel.setHits(hits);
+        if (!query.isBlank()) {
+            statusLabel.setText(String.format("%,d%s messages in %.1f ms",
+                hits.size(), hits.size() >= MAX_RESULTS ? "+" : "", micros / 1000.0));
+        }
+    }
+
+    /**
+     * Shows the conversation of the selected result's item, scrolled to the matching message.
+     */
+    private void showSelectedResult() {
+        int row = resultsTable.getSelectedRow();
+        if (row < 0) return;
+
+        HistoryIndex.Hit hit = resultsModel.getHit(row);
+        showItem(hit.item, hit.contentHash, -1);
+    }
+
+    /**
+     * Shows the conversation of the selected request, scrolled to its first message that is not
+     * in the request it extends.
+     */
+    private void showSelectedRequest() {
+        DefaultMutableTreeNode treeNode = (DefaultMutableTreeNode) sessionTree.getLastSelectedPathComponent();
+        if (treeNode == null) return;
+
+        Object entry = treeNode.getUserObject();
+        SessionBuilder.Node node = entry instanceof RequestEntry ? ((RequestEntry) entry).node : ((SessionEntry) entry).node;
+        showItem(node.item, 0, node.sharedCount < node.messageCount ? node.sharedCount : -1);
+    }
+
+    /**
+     * Shows the item's conversation, scrolled to the message with the content hash if non-zero,
+     * otherwise to the given row, otherwise to the end.
+     */
+    private void showItem(int itemIndex, long contentHash, int row) {
+        ProxyHttpRequestResponse item = itemIndex < items.size() ? items.get(itemIndex) : null;
+        if (item == null) return;
+
+        HttpRequestResponse requestResponse = HttpRequestResponse.httpRequestResponse(
+            item.finalRequest(), item.originalResponse());
+        Optional<LLMProvider> provider = LLMProviderRegistry.getInstance().findProvider(requestResponse);
+        if (provider.isEmpty()) return;
+
+        parseScheduler.submit(() -> {
+            List<ConversationMessage> messages =
+                new ArrayList<>(ParseCache.getInstance().getRequest(provider.get(), requestResponse));
+            ConversationMessage response = ParseCache.getInstance().getResponse(provider.get(), requestResponse);
+            if (response != null && response.hasContent()) {
+                messages.add(response);
+            }
+            return messages;
+        }, messages -> showConversation(provider.get(), requestResponse, messages, contentHash, row));
+    }
+
+    private void showConversation(LLMProvider provider, HttpRequestResponse requestResponse,
+                                  List<ConversationMessage> messages, long contentHash, int row) {
+        if (messages == null) return;
+
+        if (currentList != null) {
+            currentList.releaseRows();
+        }
+        LLMConversationRenderer renderer = new LLMConversationRenderer(provider.getProviderConfig());
+        VirtualMessageList list = new VirtualMessageList(messages, renderer, componentPool);
+        currentList = list;
+        viewerScrollPane.setViewportView(list);
+
+        // The response was indexed under a hash of its body
+        int target = contentHash == 0 ? row : -1;
+        for (int i = 0; i < messages.size() && contentHash != 0; i++) {
+            boolean isResponse = i == messages.size() - 1 && requestResponse.response() != null
+                && messages.get(i).getContentHash() == 0;
+            long hash = isResponse ? responseHash(requestResponse.response()) : messages.get(i).getContentHash();
+            if (hash == contentHash) {
+                target = i;
+                break;
+            }
+        }
+        int targetRow = target;
+        SwingUtilities.invokeLater(() -> {
+            if (targetRow >= 0) {
+                list.revealRow(targetRow);
+            } else {
+                list.scrollToEnd();
+            }
+        });
+    }
+
+    private static class SessionEntry {
+        public final SessionBuilder.Node node;
+
+        public SessionEntry(SessionBuilder.Node node) {
+            this.node = node;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Session %d: %s", node.sessionNumber + 1, node.title);
+        }
+    }
+
+    private static class RequestEntry {
+        public final SessionBuilder.Node node;
+
+        public RequestEntry(SessionBuilder.Node node) {
+            this.node = node;
+        }
+
+        @Override
+        public String toString() {
+            // Proxy history numbers items from 1
+            return String.format("#%d: %d messages (+%d)", node.item + 1, node.messageCount,
+                node.messageCount - node.sharedCount);
+        }
+    }
+
+    private static class UsageModel extends AbstractTableModel {
+        private static final String[] COLUMNS = {"", "Responses", "Input", "Cache write", "Cache read", "Output"};
+
+        private final String groupName;
+        private List<String> labels = new ArrayList<>();
+        private List<UsageTotals.Total> totals = new ArrayList<>();
+
+        public UsageModel(String groupName) {
+            this.groupName = groupName;
+        }
+
+        public void setTotals(List<String> labels, List<UsageTotals.Total> totals) {
+            this.labels = labels;
+            this.totals = totals;
+            fireTableDataChanged();
+        }
+
+        @Override
+        public int getRowCount() {
+            return totals.size();
+        }
+
+        @Override
+        public int getColumnCount() {
+            return COLUMNS.length;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return column == 0 ? groupName : COLUMNS[column];
+        }
+
+        @Override
+        public Class<?> getColumnClass(int column) {
+            return column == 0 ? String.class : Long.class;
+        }
+
+        @Override
+        public Object getValueAt(int row, int column) {
+            UsageTotals.Total total = totals.get(row);
+            switch (column) {
+                case 0:
+                    return labels.get(row);
+                case 1:
+                    return total.responses;
+                case 2:
+                    return total.inputTokens;
+                case 3:
+                    return total.cacheCreationInputTokens;
+                case 4:
+                    return total.cacheReadInputTokens;
+                default:
+                    return total.outputTokens;
+            }
+        }
+    }
+
+    private static class LatencyModel extends AbstractTableModel {
+        private static final String[] COLUMNS = {"", "Calls",
+            "TTFB p50 (ms)", "TTFB p95", "TTFB p99",
+            "Total p50 (ms)", "Total p95", "Total p99",
+            "Tokens/s p50", "Tokens/s p95", "Tokens/s p99"};
+
+        private final String groupName;
+        private List<String> labels = new ArrayList<>();
+        private List<LatencyStats.Percentiles> percentiles = new ArrayList<>();
+
+        public LatencyModel(String groupName) {
+            this.groupName = groupName;
+        }
+
+        public void setPercentiles(List<String> labels, List<LatencyStats.Percentiles> percentiles) {
+            this.labels = labels;
+            this.percentiles = percentiles;
+            fireTableDataChanged();
+        }
+
+        @Override
+        public int getRowCount() {
+            return percentiles.size();
+        }
+
+        @Override
+        public int getColumnCount() {
+            return COLUMNS.length;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return column == 0 ? groupName : COLUMNS[column];
+        }
+
+        @Override
+        public Class<?> getColumnClass(int column) {
+            if (column == 0) return String.class;
+            return column < 8 ? Long.class : Double.class;
+        }
+
+        @Override
+        public Object getValueAt(int row, int column) {
+            LatencyStats.Percentiles group = percentiles.get(row);
+            if (column == 0) return labels.get(row);
+            if (column == 1) return group.calls;
+            if (column < 5) return Math.round(group.timeToFirstByteMillis[column - 2]);
+            if (column < 8) return Math.round(group.totalMillis[column - 5]);
+
+            // Sketches are accurate to about 1%, so one decimal is plenty
+            double rate = group.outputTokensPerSecond[column - 8];
+            return Double.isNaN(rate) ? null : Math.round(rate * 10) / 10.0;
+        }
+    }
+
+    private static class ResultsModel extends AbstractTableModel {
+        private static final String[] COLUMNS = {"#", "Role", "Requests", "Message"};
+
+        private List<HistoryIndex.Hit> hits = new ArrayList<>();
+
+        public void setHits(List<HistoryIndex.Hit> hits) {
+            this.hits = hits;
+            fireTableDataChanged();
+        }
+
+        public HistoryIndex.Hit getHit(int row) {
+            return hits.get(row);
+        }
+
+        @Override
+        public int getRowCount() {
+            return hits.size();
+        }
+
+        @Override
+        public int getColumnCount() {
+            return COLUMNS.length;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return COLUMNS[column];
+        }
+
+        @Override
+        public Object getValueAt(int row, int column) {
+            HistoryIndex.Hit hit = hits.get(row);
+            switch (column) {
+                case 0:
+                    // Proxy history numbers items from 1
+                    return hit.item + 1;
+                case 1:
+                    return hit.role.getValue();
+                case 2:
+                    return hit.itemCount;
+                default:
+                    return hit.preview;
+            }
+        }
+    }
+}
@@ -5,48 +5,139 @@ import javax.swing.*;
 import java.awt.*;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * Generic renderer for LLM conversations, provider-agnostic.
  */
 public class LLMConversationRenderer {
+    private static final Font HEADER_FONT = new Font(Font.SANS_SERIF, Font.BOLD, 12);
+    private static final Font CONTENT_FONT = new Font(Font.SANS_SERIF, Font.PLAIN, 12);
+
     private final LLMProvider.ProviderConfig config;
 
     public LLMConversationRenderer(LLMProvider.ProviderConfig config) {
         this.config = config;
     }
 
+    public LLMProvider.ProviderConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * Creates a list row: the message panel followed by a separator unless it is the last message.
+     */
+    MessagePanelResult createMessageRow(ConversationMessage message, boolean last) {
+        MessagePanelResult result = createMessagePanel(message);
+        if (last) {
+            return result;
+        }
+
+        JPanel row = new JPanel();
+        row.setLayout(new BoxLayout(row, BoxLayout.Y_AXIS));
+        row.setBackground(UIManager.getColor("Panel.background"));
+        row.add(result.panel);
+
+        JSeparator separator = new JSeparator(SwingConstants.HORIZONTAL);
+        separator.setForeground(UIManager.getColor("Separator.foreground"));
+        separator.setBackground(UIManager.getColor("Separator.background"));
+        separator.setMaximumSize(new Dimension(Integer.MAX_VALUE, 1));
+        separator.setAlignmentX(Component.LEFT_ALIGNMENT);
+        row.add(Box.createVerticalStrut(5));
+        row.add(separator);
+        row.add(Box.createVerticalStrut(5));
+
+        return new MessagePanelResult(row, result.searchTargets, rowStructureOf(message, false), result.binder,
+            result.retargeter, result.panels);
+    }
+
+    /**
+     * Returns the texts of the search targets createMessagePanel creates for the message, in the same order,
+     * without building any components.
+     */
+    List<Supplier<String>> searchableTexts(ConversationMessage message) {
+        List<Supplier<String>> texts = new ArrayList<>();
+
+        if (message.getRole() == ConversationMessage.Role.SYSTEM) {
+            texts.add(() -> systemPromptText(message));
+        } else if (message.getRole() == ConversationMessage.Role.TOOLS) {
+            for (ContentItem item : message.getContentItems()) {
+                if (item.getType() == ContentItem.ContentType.TOOL_DEFINITION) {
+                    texts.add(() -> XmlColorizer.text(toolDefinitionText((ToolDefinitionContent) item)));
+                }
+            }
+        } else {
+            for (ContentItem item : message.getContentItems()) {
+                switch (item.getType()) {
+                    case TOOL_CALL:
+                        texts.add(() -> toolCallText((ToolCallContent) item));
+                        break;
+                    case TOOL_RESULT:
+                        texts.add(() -> ((ToolResultContent) item).getContent());
+                        break;
+                    default:
+                        texts.add(item::getDisplayText);
+                        break;
+                }
+            }
+        }
+
+        return texts;
+    }
+
     /**
-     * Renders a list of messages into a panel with text areas for search.
+     * Estimates the height of a message row at the given width without building it.
      */
-    public MessagePanelResult renderMessages(List<ConversationMessage> messages) {
-        JPanel contentPanel = new JPanel();
-        contentPanel.setLayout(new BoxLayout(contentPanel, BoxLayout.Y_AXIS));
-        contentPanel.setBackground(UIManager.getColor("Panel.background"));
-
-        List<JTextArea> allTextAreas = new ArrayList<>();
-
-        for (int i = 0; i < messages.size(); i++) {
-            ConversationMessage message = messages.get(i);
-
-            // Add message panel
-            MessagePanelResult result = createMessagePanel(message);
-            contentPanel.add(result.panel);
-            allTextAreas.addAll(result.textAreas);
-
-            // Add separator between messages (except after the last one)
-            if (i < messages.size() - 1) {
-                JSeparator separator = new JSeparator(SwingConstants.HORIZONTAL);
-                separator.setForeground(UIManager.getColor("Separator.foreground"));
-                separator.setBackground(UIManager.getColor("Separator.background"));
-                separator.setMaximumSize(new Dimension(Integer.MAX_VALUE, 1));
-                contentPanel.add(Box.createVerticalStrut(5));
-                contentPanel.add(separator);
-                contentPanel.add(Box.createVerticalStrut(5));
+    int estimateRowHeight(ConversationMessage message, int width) {
+        int charsPerLine = Math.max(20, (width - 40) / 7);
+        int height = 20 + 21 + 11; // borders, role header, separator
+
+        if (message.getRole() == ConversationMessage.Role.SYSTEM) {
+            return height + 30;
+        }
+
+        for (ContentItem item : message.getContentItems()) {
+            if (item.getType() == ContentItem.ContentType.TEXT) {
+                String text = item.getDisplayText();
+                int length = PagedTextArea.initialLength(text);
+                int lines = 1;
+                int lineLength = 0;
+                for (int i = 0; i < length; i++) {
+                    if (text.charAt(i) == '\n' || ++lineLength > charsPerLine) {
+                        lines++;
+                        lineLength = 0;
+                    }
+                }
+                height += lines * 16 + 10;
+            } else {
+                height += 35;
+            }
+        }
+
+        return height;
+    }
+
+    private static String systemPromptText(ConversationMessage message) {
+        StringBuilder systemContent = new StringBuilder();
+        for (ContentItem item : message.getContentItems()) {
+            if (item.getType() == ContentItem.ContentType.TEXT) {
+                if (systemContent.length() > 0) {
+                    systemContent.append("\n");
+                }
+                systemContent.append(item.getDisplayText());
             }
         }
+        return systemContent.toString();
+    }
+
+    private static String toolDefinitionText(ToolDefinitionContent toolDef) {
+        return toolDef.getDescription() + (toolDef.getInputSchema() != null && !toolDef.getInputSchema().isEmpty()
+            ? "\n\nInput Schema:\n" + toolDef.getInputSchema() : "");
+    }
 
-        return new MessagePanelResult(contentPanel, allTextAreas);
+    private static String toolCallText(ToolCallContent toolCall) {
+        return "ID: " + toolCall.getToolId() + "\nInput: " + toolCall.getToolInput();
     }
 
     /**
@@ -59,35 +150,31 @@ public class LLMConversationRenderer {
         messagePanel.setBackground(UIManager.getColor("Panel.background"));
         messagePanel.setAlignmentX(Component.LEFT_ALIGNMENT);
 
-        List<JTextArea> textAreas = new ArrayList<>();
+        List<UIUtils.SearchTarget> searchTargets = new ArrayList<>();
+        // Each binder points one component at the matching content of another message with the same structure
+        List<Consumer<ConversationMessage>> binders = new ArrayList<>();
+        // Each retargeter points one collapsible panel at the same content held by another message
+        List<UIUtils.CollapsiblePanelResult> panels = new ArrayList<>();
+        List<Consumer<ConversationMessage>> retargeters = new ArrayList<>();
 
         // Handle system messages differently - make them collapsible
         if (message.getRole() == ConversationMessage.Role.SYSTEM) {
             // Create collapsible system message
-            StringBuilder systemContent = new StringBuilder();
-            for (ContentItem item : message.getContentItems()) {
-                if (item.getType() == ContentItem.ContentType.TEXT) {
-                    if (systemContent.length() > 0) {
-                        systemContent.append("\n");
-                    }
-                    systemContent.append(item.getDisplayText());
-                }
-            }
-
             UIUtils.CollapsiblePanelResult systemResult = UIUtils.createCollapsiblePanel(
                 "System Prompt",
-                systemContent.toString(),
+                () -> systemPromptText(message),
                 config.systemColor,
                 config.systemIcon
             );
             messagePanel.add(systemResult.panel);
-            if (systemResult.textArea != null) {
-                textAreas.add(systemResult.textArea);
-            }
+            searchTargets.add(systemResult.searchTarget);
+            binders.add(m -> systemResult.rebind("System Prompt", () -> systemPromptText(m)));
+            panels.add(systemResult);
+            retargeters.add(m -> systemResult.retarget(() -> systemPromptText(m)));
         } else if (message.getRole() == ConversationMessage.Role.TOOLS) {
             // Create collapsible container for all tools
             JLabel toolsLabel = new JLabel("AVAILABLE TOOLS (" + message.getContentItems().size() + ")");
-            toolsLabel.setFont(new Font(Font.SANS_SERIF, Font.BOLD, 12));
+            toolsLabel.setFont(HEADER_FONT);
             toolsLabel.setForeground(config.toolDefinitionColor);
             toolsLabel.setAlignmentX(Component.LEFT_ALIGNMENT);
             messagePanel.add(toolsLabel);
@@ -101,15 +188,23 @@ public class LLMConversationRenderer {
                     // Use colored XML panel for tool definitions (handles <available_skills> etc.)
                     UIUtils.CollapsiblePanelResult toolResult = UIUtils.createColoredXmlCollapsiblePanel(
                         toolDef.getName(),
-                        toolDef.getDescription() + (toolDef.getInputSchema() != null && !toolDef.getInputSchema().isEmpty()
-                            ? "\n\nInput Schema:\n" + toolDef.getInputSchema() : ""),
+                        () -> toolDefinitionText(toolDef),
                         config.toolDefinitionColor,
                         "🔧"
                     );
                     messagePanel.add(toolResult.panel);
-                    if (toolResult.textArea != null) {
-                        textAreas.add(toolResult.textArea);
-                    }
+                    searchTargets.add(toolResult.searchTarget);
+
+                    int index = i;
+                    binders.add(m -> {
+                        ToolDefinitionContent definition = (ToolDefinitionContent) m.getContentItems().get(index);
+                        toolResult.rebind(definition.getName(), () -> toolDefinitionText(definition));
+                    });
+                    panels.add(toolResult);
+                    retargeters.add(m -> {
+                        ToolDefinitionContent definition = (ToolDefinitionContent) m.getContentItems().get(index);
+                        toolResult.retarget(() -> toolDefinitionText(definition));
+                    });
 
                     // Add space between tool panels (except after the last one)
                     if (i < message.getContentItems().size() - 1) {
@@ -120,7 +215,7 @@ public class LLMConversationRenderer {
         } else {
             // Regular role header with colors
             JLabel roleLabel = new JLabel(message.getRole().getValue().toUpperCase());
-            roleLabel.setFont(new Font(Font.SANS_SERIF, Font.BOLD, 12));
+            roleLabel.setFont(HEADER_FONT);
 
             Color roleColor = getRoleColor(message.getRole());
             roleLabel.setForeground(roleColor);
@@ -131,63 +226,66 @@ public class LLMConversationRenderer {
             // Content items
             for (int i = 0; i < message.getContentItems().size(); i++) {
                 ContentItem item = message.getContentItems().get(i);
+                int index = i;
 
                 switch (item.getType()) {
-                    case TEXT:
-                        JTextArea contentArea = new JTextArea(item.getDisplayText());
-                        contentArea.setEditable(false);
-                        contentArea.setLineWrap(true);
-                        contentArea.setWrapStyleWord(true);
-                        contentArea.setFont(new Font(Font.SANS_SERIF, Font.PLAIN, 12));
-                        contentArea.setBackground(UIManager.getColor("Panel.background"));
-                        contentArea.setForeground(UIManager.getColor("Label.foreground"));
-                        contentArea.setBorder(null);
-                        contentArea.setAlignmentX(Component.LEFT_ALIGNMENT);
-                        messagePanel.add(contentArea);
-                        textAreas.add(contentArea);
-                        break;
-
                     case TOOL_CALL:
                         ToolCallContent toolCall = (ToolCallContent) item;
                         UIUtils.CollapsiblePanelResult toolResult = UIUtils.createCollapsiblePanel(
                             "Tool Use: " + toolCall.getToolName(),
-                            "ID: " + toolCall.getToolId() + "\nInput: " + toolCall.getToolInput(),
+                            () -> toolCallText(toolCall),
                             config.toolCallColor,
                             config.toolIcon
                         );
                         messagePanel.add(toolResult.panel);
-                        if (toolResult.textArea != null) {
-                            textAreas.add(toolResult.textArea);
-                        }
+                        searchTargets.add(toolResult.searchTarget);
+                        binders.add(m -> {
+                            ToolCallContent call = (ToolCallContent) m.getContentItems().get(index);
+                            toolResult.rebind("Tool Use: " + call.getToolName(), () -> toolCallText(call));
+                        });
+                        panels.add(toolResult);
+                        retargeters.add(m -> {
+                            ToolCallContent call = (ToolCallContent) m.getContentItems().get(index);
+                            toolResult.retarget(() -> toolCallText(call));
+                        });
                         break;
 
                     case TOOL_RESULT:
                         ToolResultContent toolResultContent = (ToolResultContent) item;
                         UIUtils.CollapsiblePanelResult resultPanel = UIUtils.createCollapsiblePanel(
                             "Tool Result",
-                            toolResultContent.getContent(),
+                            toolResultContent::getContent,
                             config.toolResultColor,
                             "📄"
                         );
                         messagePanel.add(resultPanel.panel);
-                        if (resultPanel.textArea != null) {
-                            textAreas.add(resultPanel.textArea);
-                        }
+                        searchTargets.add(resultPanel.searchTarget);
+                        binders.add(m -> {
+                            ToolResultContent result = (ToolResultContent) m.getContentItems().get(index);
+                            resultPanel.rebind("Tool Result", result::getContent);
+                        });
+                        panels.add(resultPanel);
+                        retargeters.add(m -> resultPanel.retarget(((ToolResultContent) m.getContentItems().get(index))::getContent));
                         break;
 
                     default:
-                        // For other types, just display as text
-                        JTextArea defaultArea = new JTextArea(item.getDisplayText());
-                        defaultArea.setEditable(false);
-                        defaultArea.setLineWrap(true);
-                        defaultArea.setWrapStyleWord(true);
-                        defaultArea.setFont(new Font(Font.SANS_SERIF, Font.PLAIN, 12));
-                        defaultArea.setBackground(UIManager.getColor("Panel.background"));
-                        defaultArea.setForeground(UIManager.getColor("Label.foreground"));
-                        defaultArea.setBorder(null);
-                        defaultArea.setAlignmentX(Component.LEFT_ALIGNMENT);
-                        messagePanel.add(defaultArea);
-                        textAreas.add(defaultArea);
+                        // Text and other types are displayed as plain text
+                        String text = item.getDisplayText();
+                        JTextArea contentArea = PagedTextArea.isLarge(text) ? new PagedTextArea(text) : new JTextArea(text);
+                        contentArea.setEditable(false);
+                        contentArea.setLineWrap(true);
+                        contentArea.setWrapStyleWord(true);
+                        contentArea.setFont(CONTENT_FONT);
+                        contentArea.setBackground(UIManager.getColor("Panel.background"));
+                        contentArea.setForeground(UIManager.getColor("Label.foreground"));
+                        contentArea.setBorder(null);
+                        contentArea.setAlignmentX(Component.LEFT_ALIGNMENT);
+                        messagePanel.add(contentArea);
+                        searchTargets.add(UIUtils.SearchTarget.of(contentArea));
+                        binders.add(m -> {
+                            contentArea.setText(m.getContentItems().get(index).getDisplayText());
+                            contentArea.setCaretPosition(0);
+                        });
                         break;
                 }
 
@@ -198,7 +296,47 @@ public class LLMConversationRenderer {
             }
         }
 
-        return new MessagePanelResult(messagePanel, textAreas);
+        String structure = structureOf(message);
+        Consumer<ConversationMessage> binder = structure == null ? null : m -> {
+            for (Consumer<ConversationMessage> itemBinder : binders) {
+                itemBinder.accept(m);
+            }
+        };
+        Consumer<ConversationMessage> retargeter = m -> {
+            for (Consumer<ConversationMessage> itemRetargeter : retargeters) {
+                itemRetargeter.accept(m);
+            }
+        };
+        return new MessagePanelResult(messagePanel, searchTargets, structure, binder, retargeter, panels);
+    }
+
+    /**
+     * Describes the components createMessageRow builds for the message. Rows built for messages with
+     * the same structure can be rebound to each other's content. Returns null if the row can't be
+     * rebound, e.g. because it holds a paged text area.
+     */
+    String rowStructureOf(ConversationMessage message, boolean last) {
+        String structure = structureOf(message);
+        return structure == null || last ? structure : structure + "separator";
+    }
+
+    /**
+     * Returns the structure of the panel createMessagePanel builds for the message.
+     */
+    String structureOf(ConversationMessage message) {
+        ConversationMessage.Role role = message.getRole();
+        boolean plainText = role != ConversationMessage.Role.SYSTEM && role != ConversationMessage.Role.TOOLS;
+
+        StringBuilder structure = new StringBuilder(role.name()).append(':');
+        for (ContentItem item : message.getContentItems()) {
+            ContentItem.ContentType type = item.getType();
+            if (plainText && type != ContentItem.ContentType.TOOL_CALL && type != ContentItem.ContentType.TOOL_RESULT
+                && PagedTextArea.isLarge(item.getDisplayText())) {
+                return null;
+            }
+            structure.append(type.ordinal()).append(',');
+        }
+        return structure.toString();
     }
 
     private Color getRoleColor(ConversationMessage.Role role) {
@@ -219,15 +357,39 @@ public class LLMConversationRenderer {
     }
 
     /**
-     * Result containing a panel and its associated text areas for search.
+     * Result containing a panel and its associated search targets.
+     * Panels with a structure can be pointed at another message of the same structure with the binder.
+     * Message panels can be pointed at another message with the same content with the retargeter,
+     * which keeps their collapsible panels as they are.
      */
     public static class MessagePanelResult {
         public final JPanel panel;
-        public final List<JTextArea> textAreas;
+        public final List<UIUtils.SearchTarget> searchTargets;
+        public final String structure;
+        public final Consumer<ConversationMessage> binder;
+        public final Consumer<ConversationMessage> retargeter;
+        private final List<UIUtils.CollapsiblePanelResult> panels;
 
-        public MessagePanelResult(JPanel panel, List<JTextArea> textAreas) {
+        public MessagePanelResult(JPanel panel, List<UIUtils.SearchTarget> searchTargets,
+                                  String structure, Consumer<ConversationMessage> binder,
+                                  Consumer<ConversationMessage> retargeter,
+                                  List<UIUtils.CollapsiblePanelResult> panels) {
             this.panel = panel;
-            this.textAreas = textAreas;
+            this.searchTargets = searchTargets;
+            this.structure = structure;
+            this.binder = binder;
+            this.retargeter = retargeter;
+            this.panels = panels;
+        }
+
+        /**
+         * Drops the content of the collapsible panels, so a row kept for reuse doesn't keep its
+         * message alive. The row must be rebound or retargeted before it is shown again.
+         */
+        public void release() {
+            for (UIUtils.CollapsiblePanelResult collapsible : panels) {
+                collapsible.release();
+            }
         }
     }
 }
\ No newline at end of file
@@ -21,6 +21,13 @@ public class LLMRequestEditor implements ExtensionProvidedHttpRequestEditor {
     private final JScrollPane scrollPane;
     private final JPanel searchPanel;
     private final UIUtils.SearchHighlighter searchHighlighter;
+    private final JCheckBox newTurnsCheckBox;
+    private final ParseScheduler parseScheduler = new ParseScheduler();
+    private final MessageComponentPool componentPool = new MessageComponentPool();
+    private VirtualMessageList currentList;
+    // Displayed conversation and how many of its leading messages an earlier request already contained
+    private List<ConversationMessage> currentMessages;
+    private int sharedPrefixLength;
     private HttpRequestResponse requestResponse;
     private LLMProvider currentProvider;
 
@@ -62,7 +69,22 @@ public class LLMRequestEditor implements ExtensionProvidedHttpRequestEditor {
             }
         });
 
-        panel.add(searchPanel, BorderLayout.NORTH);
+        // Limits the view to the turns appended since the request this one extends
+        newTurnsCheckBox = new JCheckBox("New since previous turn");
+        newTurnsCheckBox.setBackground(UIManager.getColor("Panel.background"));
+        newTurnsCheckBox.setEnabled(false);
+        newTurnsCheckBox.addActionListener(e -> {
+            if (currentList != null) {
+                displayMessages(currentProvider);
+            }
+        });
+
+        JPanel topPanel = new JPanel(new BorderLayout());
+        topPanel.setBackground(UIManager.getColor("Panel.background"));
+        topPanel.add(searchPanel, BorderLayout.CENTER);
+        topPanel.add(newTurnsCheckBox, BorderLayout.EAST);
+
+        panel.add(topPanel, BorderLayout.NORTH);
         panel.add(scrollPane, BorderLayout.CENTER);
         panel.setBackground(UIManager.getColor("Panel.background"));
 
@@ -125,41 +147,108 @@ public class LLMRequestEditor implements ExtensionProvidedHttpRequestEditor {
     }
 
     private void updateContent() {
-        contentPanel.removeAll();
-        List<JTextArea> allTextAreas = new ArrayList<>();
-
         // Find the appropriate provider
         LLMProviderRegistry registry = LLMProviderRegistry.getInstance();
         Optional<LLMProvider> providerOpt = registry.findProvider(requestResponse);
 
-        if (providerOpt.isPresent()) {
-            currentProvider = providerOpt.get();
-            List<ConversationMessage> messages = currentProvider.parseRequest(requestResponse);
-
-            if (!messages.isEmpty()) {
-                LLMConversationRenderer renderer = new LLMConversationRenderer(currentProvider.getProviderConfig());
-                LLMConversationRenderer.MessagePanelResult result = renderer.renderMessages(messages);
-                contentPanel.add(result.panel);
-                allTextAreas.addAll(result.textAreas);
-            } else {
-                showProviderMessage(currentProvider.getProviderName());
-            }
-        } else {
+        if (providerOpt.isEmpty()) {
             currentProvider = null;
+            parseScheduler.cancel();
+            contentPanel.removeAll();
             showNoLLMMessage();
+            finishUpdate(new ArrayList<>());
+            return;
+        }
+
+        // Parse off the EDT; only the newest item's result is rendered
+        LLMProvider provider = providerOpt.get();
+        HttpRequestResponse target = requestResponse;
+        currentProvider = provider;
+
+        contentPanel.removeAll();
+        showParsingMessage(provider.getProviderName());
+        finishUpdate(new ArrayList<>());
+
+        // The earlier request is looked up here too, since it walks the whole cache
+        parseScheduler.submit(
+            () -> {
+                ParseCache cache = ParseCache.getInstance();
+                List<ConversationMessage> messages = cache.getRequest(provider, target);
+                return new ParsedRequest(messages, cache.getExtendedPrefixLength(provider, messages));
+            },
+            parsed -> showMessages(provider, parsed)
+        );
+    }
+
+    private void showMessages(LLMProvider provider, ParsedRequest parsed) {
+        contentPanel.removeAll();
+
+        List<ConversationMessage> messages = parsed != null ? parsed.messages : null;
+
+        if (messages == null || messages.isEmpty()) {
+            showProviderMessage(provider.getProviderName());
+            finishUpdate(new ArrayList<>());
+            return;
+        }
+
+        currentMessages = messages;
+        sharedPrefixLength = parsed.sharedPrefixLength;
+        newTurnsCheckBox.setEnabled(sharedPrefixLength > 0);
+        newTurnsCheckBox.setToolTipText(sharedPrefixLength > 0
+            ? String.format("%d of %d messages were already in an earlier request", sharedPrefixLength, messages.size())
+            : "No earlier request of this conversation has been viewed");
+        displayMessages(provider);
+    }
+
+    /**
+     * Shows the current conversation, or only its new turns if that view is selected and an earlier
+     * request of the conversation is known.
+     */
+    private void displayMessages(LLMProvider provider) {
+        List<ConversationMessage> messages = currentMessages;
+        JLabel hiddenLabel = null;
+        if (newTurnsCheckBox.isSelected() && sharedPrefixLength > 0) {
+            messages = currentMessages.subList(sharedPrefixLength, currentMessages.size());
+            hiddenLabel = new JLabel(String.format("%d earlier messages hidden", sharedPrefixLength));
+            hiddenLabel.setForeground(UIManager.getColor("Label.disabledForeground"));
+            hiddenLabel.setBorder(BorderFactory.createEmptyBorder(4, 10, 4, 10));
         }
 
+        // The list builds rows for the visible messages only, so it has to be the viewport's view
+        // Rows of the previous conversation go back to the pool first so the new list can reuse them
+        releaseCurrentList();
+        LLMConversationRenderer renderer = new LLMConversationRenderer(provider.getProviderConfig());
+        VirtualMessageList list = new VirtualMessageList(messages, renderer, componentPool);
+        currentList = list;
+        list.setRowsChangedListener(searchHighlighter::refreshHighlights);
+        scrollPane.setViewportView(list);
+        scrollPane.setColumnHeaderView(hiddenLabel);
+        searchHighlighter.updateTargets(list.getSearchTargets());
+
+        // Auto-scroll to bottom to show most recent messages
+        SwingUtilities.invokeLater(list::scrollToEnd);
+    }
+
+    private void finishUpdate(List<JTextArea> textAreas) {
         // Update search highlighter with new text areas
-        searchHighlighter.updateTextAreas(allTextAreas);
+        searchHighlighter.updateTextAreas(textAreas);
 
+        if (scrollPane.getViewport().getView() != contentPanel) {
+            scrollPane.setViewportView(contentPanel);
+            scrollPane.setColumnHeaderView(null);
+        }
+        releaseCurrentList();
+        currentMessages = null;
+        newTurnsCheckBox.setEnabled(false);
         contentPanel.revalidate();
         contentPanel.repaint();
+    }
 
-        // Auto-scroll to bottom to show most recent messages
-        SwingUtilities.invokeLater(() -> {
-            JScrollBar verticalScrollBar = scrollPane.getVerticalScrollBar();
-            verticalScrollBar.setValue(verticalScrollBar.getMaximum());
-        });
+    private void releaseCurrentList() {
+        if (currentList != null) {
+            currentList.releaseRows();
+            currentList = null;
+        }
     }
 
     private void showNoLLMMessage() {
@@ -171,6 +260,15 @@ public class LLMRequestEditor implements ExtensionProvidedHttpRequestEditor {
         contentPanel.add(label);
     }
 
+    private void showParsingMessage(String providerName) {
+        JLabel label = new JLabel("Parsing " + providerName + " Request...");
+        label.setFont(new Font(Font.SANS_SERIF, Font.PLAIN, 14));
+        label.setForeground(UIManager.getColor("Label.foreground"));
+        label.setAlignmentX(Component.LEFT_ALIGNMENT);
+        label.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+        contentPanel.add(label);
+    }
+
     private void showProviderMessage(String providerName) {
         JLabel label = new JLabel(providerName + " Request");
         label.setFont(new Font(Font.SANS_SERIF, Font.PLAIN, 14));
@@ -184,4 +282,17 @@ public class LLMRequestEditor implements ExtensionProvidedHttpRequestEditor {
     public HttpRequest getRequest() {
         return requestResponse != null ? requestResponse.request() : null;
     }
-}
\ No newline at end of file
+
+    /**
+     * A parsed request and how many of its leading messages an earlier cached request already had.
+     */
+    private static class ParsedRequest {
+        public final List<ConversationMessage> messages;
+        public final int sharedPrefixLength;
+
+        public ParsedRequest(List<ConversationMessage> messages, int sharedPrefixLength) {
+            this.messages = messages;
+            this.sharedPrefixLength = sharedPrefixLength;
+        }
+    }
+}
@@ -21,6 +21,11 @@ public class LLMResponseEditor implements ExtensionProvidedHttpResponseEditor {
     private final JScrollPane scrollPane;
     private final JPanel searchPanel;
     private final UIUtils.SearchHighlighter searchHighlighter;
+    private final ParseScheduler parseScheduler = new ParseScheduler();
+    private final MessageComponentPool componentPool = new MessageComponentPool();
+    private LLMConversationRenderer currentRenderer;
+    private LLMConversationRenderer.MessagePanelResult currentResult;
+    private ConversationMessage currentResponse;
     private HttpRequestResponse requestResponse;
     private LLMProvider currentProvider;
 
@@ -125,32 +130,79 @@ public class LLMResponseEditor implements ExtensionProvidedHttpResponseEditor {
     }
 
     private void updateContent() {
-        contentPanel.removeAll();
-        List<JTextArea> allTextAreas = new ArrayList<>();
-
         // Find the appropriate provider
         LLMProviderRegistry registry = LLMProviderRegistry.getInstance();
         Optional<LLMProvider> providerOpt = registry.findProvider(requestResponse);
 
-        if (providerOpt.isPresent()) {
-            currentProvider = providerOpt.get();
-            ConversationMessage response = currentProvider.parseResponse(requestResponse);
-
-            if (response != null && response.hasContent()) {
-                LLMConversationRenderer renderer = new LLMConversationRenderer(currentProvider.getProviderConfig());
-                LLMConversationRenderer.MessagePanelResult result = renderer.createMessagePanel(response);
-                contentPanel.add(result.panel);
-                allTextAreas.addAll(result.textAreas);
-            } else {
-                showProviderResponse(currentProvider.getProviderName());
-            }
-        } else {
+        if (providerOpt.isEmpty()) {
             currentProvider = null;
+            parseScheduler.cancel();
+            contentPanel.removeAll();
+            releaseCurrentResult();
             showNoLLMMessage();
+            finishUpdate(new ArrayList<>());
+            return;
+        }
+
+        // Parse off the EDT; only the newest item's result is rendered
+        LLMProvider provider = providerOpt.get();
+        HttpRequestResponse target = requestResponse;
+        currentProvider = provider;
+
+        contentPanel.removeAll();
+        releaseCurrentResult();
+        showParsingMessage(provider.getProviderName());
+        finishUpdate(new ArrayList<>());
+
+        parseScheduler.submit(
+            () -> ParseCache.getInstance().getResponse(provider, target),
+            response -> showResponse(provider, response)
+        );
+    }
+
+    private void showResponse(LLMProvider provider, ConversationMessage response) {
+        contentPanel.removeAll();
+        releaseCurrentResult();
+        List<UIUtils.SearchTarget> searchTargets = new ArrayList<>();
+
+        if (response != null && response.hasContent()) {
+            LLMConversationRenderer renderer = new LLMConversationRenderer(provider.getProviderConfig());
+            LLMConversationRenderer.MessagePanelResult result = componentPool.acquire(renderer, response, true);
+            currentRenderer = renderer;
+            currentResult = result;
+            currentResponse = response;
+            if (response.getUsage() != null) {
+                showUsage(response.getUsage().toString());
+            }
+            Latency latency = requestResponse != null
+                ? Latency.of(requestResponse.timingData().orElse(null), response.getUsage()) : null;
+            if (latency != null) {
+                showUsage(latency.toString());
+            }
+            contentPanel.add(result.panel);
+            searchTargets.addAll(result.searchTargets);
+        } else {
+            showProviderResponse(provider.getProviderName());
+        }
+
+        finishUpdate(searchTargets);
+    }
+
+    /**
+     * Returns the displayed response panel to the pool once it has been removed from the content panel.
+     */
+    private void releaseCurrentResult() {
+        if (currentResult != null) {
+            componentPool.release(currentRenderer, currentResult, currentResponse, true);
+            currentRenderer = null;
+            currentResult = null;
+            currentResponse = null;
         }
+    }
 
-        // Update search highlighter with new text areas
-        searchHighlighter.updateTextAreas(allTextAreas);
+    private void finishUpdate(List<UIUtils.SearchTarget> searchTargets) {
+        // Update search highlighter with new search targets
+        searchHighlighter.updateTargets(searchTargets);
 
         contentPanel.revalidate();
         contentPanel.repaint();
@@ -165,6 +217,24 @@ public class LLMResponseEditor implements ExtensionProvidedHttpResponseEditor {
         contentPanel.add(label);
     }
 
+    private void showParsingMessage(String providerName) {
+        JLabel label = new JLabel("Parsing " + providerName + " Response...");
+        label.setFont(new Font(Font.SANS_SERIF, Font.PLAIN, 14));
+        label.setForeground(UIManager.getColor("Label.foreground"));
+        label.setAlignmentX(Component.LEFT_ALIGNMENT);
+        label.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+        contentPanel.add(label);
+    }
+
+    private void showUsage(String text) {
+        JLabel label = new JLabel(text);
+        label.setFont(new Font(Font.SANS_SERIF, Font.PLAIN, 12));
+        label.setForeground(UIManager.getColor("Label.disabledForeground"));
+        label.setAlignmentX(Component.LEFT_ALIGNMENT);
+        label.setBorder(BorderFactory.createEmptyBorder(5, 10, 5, 10));
+        contentPanel.add(label);
+    }
+
     private void showProviderResponse(String providerName) {
         JLabel label = new JLabel(providerName + " Response");
         label.setFont(new Font(Font.SANS_SERIF, Font.PLAIN, 14));
@@ -0,0 +1,140 @@
+package ui;
+
+import core.ConversationMessage;
+import core.LLMProvider;
+
+import javax.swing.text.JTextComponent;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+
+/**
+ * Keeps message components that went out of use so later conversations can reuse them.
+ * A component built for a message with the same content hash is reused as displayed and pointed
+ * at the new message; otherwise a component with the same structure is rebound to it. Only messages
+ * without a match get new components. Released components drop their lazily read content, so they
+ * don't keep the messages they showed alive. Must only be used on the EDT.
+ */
+public class MessageComponentPool {
+    private static final int DEFAULT_CAPACITY = 64;
+
+    private final int capacity;
+    // Released components, most recently released last
+    private final ArrayDeque<Entry> free = new ArrayDeque<>();
+
+    private long created;
+    private long reused;
+    private long rebound;
+
+    public MessageComponentPool() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public MessageComponentPool(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * Returns a row for the message, reusing a released one when possible.
+     */
+    public LLMConversationRenderer.MessagePanelResult acquire(LLMConversationRenderer renderer,
+                                                              ConversationMessage message, boolean last) {
+        LLMProvider.ProviderConfig config = renderer.getConfig();
+
+        // Same content: the component can be shown unchanged, including expanded panels
+        long contentHash = message.getContentHash();
+        if (contentHash != 0) {
+            Entry entry = take(e -> e.contentHash == contentHash && e.last == last && e.config == config);
+            if (entry != null) {
+                entry.row.retargeter.accept(message);
+                reused++;
+                return entry.row;
+            }
+        }
+
+        // Same structure: point the existing components at the new content
+        String structure = renderer.rowStructureOf(message, last);
+        if (structure != null) {
+            Entry entry = take(e -> structure.equals(e.row.structure) && e.config == config);
+            if (entry != null) {
+                entry.row.binder.accept(message);
+                rebound++;
+                return entry.row;
+            }
+        }
+
+        created++;
+        return renderer.createMessageRow(message, last);
+    }
+
+    /**
+     * Returns a row that is no longer displayed to the pool.
+     */
+    public void release(LLMConversationRenderer renderer, LLMConversationRenderer.MessagePanelResult row,
+                        ConversationMessage message, boolean last) {
+        // Search highlights belong to the conversation the row was shown in
+        for (UIUtils.SearchTarget target : row.searchTargets) {
+            JTextComponent textComponent = target.getTextComponent();
+            if (textComponent != null) {
+                textComponent.getHighlighter().removeAllHighlights();
+            }
+        }
+        row.release();
+
+        free.addLast(new Entry(row, message.getContentHash(), last, renderer.getConfig()));
+        while (free.size() > capacity) {
+            free.removeFirst();
+        }
+    }
+
+    public void clear() {
+        free.clear();
+    }
+
+    public long getCreated() {
+        return created;
+    }
+
+    public long getReused() {
+        return reused;
+    }
+
+    public long getRebound() {
+        return rebound;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("MessageComponentPool[free=%d, created=%d, reused=%d, rebound=%d]",
+            free.size(), created, reused, rebound);
+    }
+
+    /**
+     * Removes and returns the most recently released entry matching the condition.
+     */
+    private Entry take(java.util.function.Predicate<Entry> condition) {
+        Iterator<Entry> iterator = free.descendingIterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (condition.test(entry)) {
+                iterator.remove();
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    private static class Entry {
+        public final LLMConversationRenderer.MessagePanelResult row;
+        public final long contentHash;
+        public final boolean last;
+        public final LLMProvider.ProviderConfig config;
+
+        public Entry(LLMConversationRenderer.MessagePanelResult row, long contentHash, boolean last,
+                     LLMProvider.ProviderConfig config) {
+            this.row = row;
+            this.contentHash = contentHash;
+            this.last = last;
+            this.config = config;
+        }
+    }
+}
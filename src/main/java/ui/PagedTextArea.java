@@ -0,0 +1,286 @@
+package ui;
+
+import javax.swing.*;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Text area for very large content. Only a head and a tail window of the text are put into the
+ * document; the parts in between are shown as a marker line that loads the next page when clicked.
+ * Search still runs over the whole text and can ask for the part around a match to be loaded.
+ */
+public class PagedTextArea extends JTextArea {
+    // Content longer than this many characters is displayed paged
+    private static final int DEFAULT_THRESHOLD = 256 * 1024;
+
+    private static final int HEAD_LENGTH = 32 * 1024;
+    private static final int TAIL_LENGTH = 8 * 1024;
+    private static final int PAGE_LENGTH = 64 * 1024;
+
+    // Gaps shorter than this next to a loaded window are loaded along with it instead of leaving a marker
+    private static final int MIN_GAP_LENGTH = 4 * 1024;
+
+    private static volatile int threshold = Integer.getInteger("llm.largeContentThreshold", DEFAULT_THRESHOLD);
+
+    private final String fullText;
+    // Consecutive parts of the full text in order, each either loaded or shown as a marker
+    private final List<Segment> segments = new ArrayList<>();
+
+    public PagedTextArea(String text) {
+        this.fullText = text;
+
+        int headEnd = Math.min(HEAD_LENGTH, text.length());
+        int tailStart = Math.max(headEnd, text.length() - TAIL_LENGTH);
+        segments.add(new Segment(0, headEnd, true));
+        if (tailStart > headEnd) {
+            segments.add(new Segment(headEnd, tailStart, false));
+        }
+        if (text.length() > tailStart) {
+            segments.add(new Segment(tailStart, text.length(), true));
+        }
+
+        StringBuilder view = new StringBuilder();
+        for (Segment segment : segments) {
+            view.append(viewText(segment));
+        }
+        setText(view.toString());
+        setCaretPosition(0);
+
+        MouseAdapter markerListener = new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                int index = markerAt(e.getPoint());
+                if (index >= 0) {
+                    Segment gap = segments.get(index);
+                    load(index, gap.start, Math.min(gap.end, gap.start + PAGE_LENGTH));
+                }
+            }
+
+            @Override
+            public void mouseMoved(MouseEvent e) {
+                setCursor(markerAt(e.getPoint()) >= 0
+                    ? Cursor.getPredefinedCursor(Cursor.HAND_CURSOR)
+                    : Cursor.getPredefinedCursor(Cursor.TEXT_CURSOR));
+            }
+        };
+        addMouseListener(markerListener);
+        addMouseMotionListener(markerListener);
+    }
+
+    /**
+     * Returns whether text of this length is displayed paged.
+     */
+    public static boolean isLarge(String text) {
+        return text != null && text.length() > threshold;
+    }
+
+    /**
+     * Returns how many characters of the text are displayed before any page is loaded.
+     */
+    public static int initialLength(String text) {
+        return isLarge(text) ? Math.min(text.length(), HEAD_LENGTH + TAIL_LENGTH) : text.length();
+    }
+
+    public static int getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * Sets the number of characters above which content is displayed paged.
+     */
+    public static void setThreshold(int characters) {
+        threshold = characters;
+    }
+
+    /**
+     * Returns the whole text, including the parts that are not loaded.
+     */
+    public String getFullText() {
+        return fullText;
+    }
+
+    /**
+     * Maps an offset in the full text to the document, or returns -1 if that part is not loaded.
+     */
+    public int toViewOffset(int offset) {
+        int viewPosition = 0;
+        for (Segment segment : segments) {
+            if (offset < segment.end || (offset == segment.end && segment == segments.get(segments.size() - 1))) {
+                return segment.loaded ? viewPosition + offset - segment.start : -1;
+            }
+            viewPosition += viewLength(segment);
+        }
+        return -1;
+    }
+
+    /**
+     * Loads the parts of the range that are not displayed yet, with some context around them.
+     */
+    public void showRange(int start, int end) {
+        for (int i = 0; i < segments.size(); i++) {
+            Segment gap = segments.get(i);
+            if (gap.loaded || gap.end <= start || gap.start >= end) {
+                continue;
+            }
+
+            int from = Math.max(gap.start, Math.min(start, end - PAGE_LENGTH / 2) - PAGE_LENGTH / 4);
+            int to = Math.min(gap.end, Math.max(end, from + PAGE_LENGTH / 2));
+            if (from - gap.start < MIN_GAP_LENGTH) {
+                from = gap.start;
+            }
+            if (gap.end - to < MIN_GAP_LENGTH) {
+                to = gap.end;
+            }
+
+            load(i, from, to);
+            // The gap was replaced by up to three segments; continue after the loaded one
+            i = indexOf(from);
+        }
+    }
+
+    /**
+     * Creates a search target that searches the full text and loads matches on demand.
+     */
+    public UIUtils.SearchTarget getSearchTarget() {
+        PagedTextArea textArea = this;
+        return new UIUtils.SearchTarget() {
+            @Override
+            public String getText() {
+                return fullText;
+            }
+
+            @Override
+            public JTextArea getTextComponent() {
+                return textArea;
+            }
+
+            @Override
+            public JTextArea reveal() {
+                return textArea;
+            }
+
+            @Override
+            public int toViewOffset(int offset) {
+                return textArea.toViewOffset(offset);
+            }
+
+            @Override
+            public void showRange(int start, int end) {
+                textArea.showRange(start, end);
+            }
+        };
+    }
+
+    /**
+     * Loads [from, to) of the gap at the given index, replacing its marker in the document.
+     */
+    private void load(int index, int from, int to) {
+        Segment gap = segments.get(index);
+        int viewPosition = viewPosition(index);
+        int markerLength = viewLength(gap);
+
+        List<Segment> replacement = new ArrayList<>();
+        if (from > gap.start) {
+            replacement.add(new Segment(gap.start, from, false));
+        }
+        replacement.add(new Segment(from, to, true));
+        if (to < gap.end) {
+            replacement.add(new Segment(to, gap.end, false));
+        }
+
+        StringBuilder view = new StringBuilder();
+        for (Segment segment : replacement) {
+            view.append(viewText(segment));
+        }
+
+        // Edit the document in place so highlights and the caret outside the gap stay where they are
+        Document doc = getDocument();
+        try {
+            doc.remove(viewPosition, markerLength);
+            doc.insertString(viewPosition, view.toString(), null);
+        } catch (BadLocationException e) {
+            return;
+        }
+
+        segments.remove(index);
+        segments.addAll(index, replacement);
+        mergeLoadedSegments();
+
+        revalidate();
+        repaint();
+    }
+
+    private void mergeLoadedSegments() {
+        for (int i = segments.size() - 1; i > 0; i--) {
+            Segment previous = segments.get(i - 1);
+            Segment current = segments.get(i);
+            if (previous.loaded && current.loaded) {
+                segments.set(i - 1, new Segment(previous.start, current.end, true));
+                segments.remove(i);
+            }
+        }
+    }
+
+    private int markerAt(Point point) {
+        int offset = viewToModel2D(point);
+        int viewPosition = 0;
+        for (int i = 0; i < segments.size(); i++) {
+            Segment segment = segments.get(i);
+            int length = viewLength(segment);
+            if (!segment.loaded && offset >= viewPosition && offset < viewPosition + length) {
+                return i;
+            }
+            viewPosition += length;
+        }
+        return -1;
+    }
+
+    private int indexOf(int offset) {
+        for (int i = 0; i < segments.size(); i++) {
+            if (offset < segments.get(i).end) {
+                return i;
+            }
+        }
+        return segments.size() - 1;
+    }
+
+    private int viewPosition(int index) {
+        int viewPosition = 0;
+        for (int i = 0; i < index; i++) {
+            viewPosition += viewLength(segments.get(i));
+        }
+        return viewPosition;
+    }
+
+    private int viewLength(Segment segment) {
+        return segment.loaded ? segment.end - segment.start : marker(segment).length();
+    }
+
+    private String viewText(Segment segment) {
+        return segment.loaded ? fullText.substring(segment.start, segment.end) : marker(segment);
+    }
+
+    private static String marker(Segment gap) {
+        return String.format("\n[⋯ %,d characters not shown, click to load more ⋯]\n", gap.end - gap.start);
+    }
+
+    /**
+     * Part [start, end) of the full text.
+     */
+    private static class Segment {
+        public final int start;
+        public final int end;
+        public final boolean loaded;
+
+        public Segment(int start, int end, boolean loaded) {
+            this.start = start;
+            this.end = end;
+            this.loaded = loaded;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package ui;
+
+import javax.swing.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Runs parse work for one editor on a shared background pool and hands the result to the EDT.
+ * Each submission supersedes the previous one: queued work is cancelled, and results of work
+ * that was already running are dropped, so only the newest item is ever rendered.
+ */
+public class ParseScheduler {
+    private static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(2, new ParseThreadFactory());
+
+    private final AtomicLong generation = new AtomicLong();
+    private Future<?> pending;
+
+    /**
+     * Runs the task in the background and passes its result to the consumer on the EDT,
+     * unless another task has been submitted or the scheduler was cancelled in the meantime.
+     * A task that throws delivers null.
+     */
+    public synchronized <T> void submit(Callable<T> task, Consumer<T> onResult) {
+        long ticket = generation.incrementAndGet();
+        cancelPending();
+
+        pending = EXECUTOR.submit(() -> {
+            if (generation.get() != ticket) {
+                return;
+            }
+
+            T result;
+            try {
+                result = task.call();
+            } catch (Exception e) {
+                result = null;
+            }
+
+            if (generation.get() != ticket) {
+                return;
+            }
+
+            T finalResult = result;
+            SwingUtilities.invokeLater(() -> {
+                if (generation.get() == ticket) {
+                    onResult.accept(finalResult);
+                }
+            });
+        });
+    }
+
+    /**
+     * Drops any queued or running task so its result is never delivered.
+     */
+    public synchronized void cancel() {
+        generation.incrementAndGet();
+        cancelPending();
+    }
+
+    private void cancelPending() {
+        if (pending != null) {
+            // Parsers don't check for interruption, so superseded running work is dropped instead
+            pending.cancel(false);
+            pending = null;
+        }
+    }
+
+    /**
+     * Stops the shared parse threads, e.g. when the extension is unloaded.
+     */
+    public static void shutdown() {
+        EXECUTOR.shutdownNow();
+    }
+
+    private static class ParseThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "LLM parser " + count.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.NORM_PRIORITY - 1);
+            return thread;
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package ui;
 
+import core.SearchIndex;
 import javax.swing.*;
 import javax.swing.event.DocumentEvent;
 import javax.swing.event.DocumentListener;
@@ -9,7 +10,15 @@ import java.awt.event.ActionEvent;
 import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
@@ -18,88 +27,32 @@ import java.util.regex.PatternSyntaxException;
  * Utility class for UI components and functionality used across the extension.
  */
 public class UIUtils {
-
-    // Colors for XML indentation levels (8 colors that cycle)
-    private static final Color[] INDENT_COLORS = {
-        new Color(86, 156, 214),   // Blue
-        new Color(78, 201, 176),   // Teal
-        new Color(184, 215, 163),  // Light Green
-        new Color(220, 220, 170),  // Yellow
-        new Color(206, 145, 120),  // Orange/Salmon
-        new Color(197, 134, 192),  // Purple
-        new Color(156, 220, 254),  // Light Blue
-        new Color(181, 206, 168)   // Sage Green
-    };
-
-    // Pattern to match <available_skills>...</available_skills> blocks
-    private static final Pattern AVAILABLE_SKILLS_PATTERN =
-        Pattern.compile("(<available_skills>)(.*?)(</available_skills>)", Pattern.DOTALL);
+    // Typing pause after which the search field's text is searched
+    private static final int SEARCH_DELAY_MILLIS = 150;
 
     /**
      * Creates a collapsible panel with a clickable header.
      */
     public static CollapsiblePanelResult createCollapsiblePanel(String title, String content, Color titleColor, String icon) {
-        JPanel containerPanel = new JPanel();
-        containerPanel.setLayout(new BoxLayout(containerPanel, BoxLayout.Y_AXIS));
-        containerPanel.setBackground(UIManager.getColor("Panel.background"));
-        containerPanel.setAlignmentX(Component.LEFT_ALIGNMENT);
-
-        // Create clickable header
-        JPanel headerPanel = new JPanel(new BorderLayout());
-        headerPanel.setBackground(UIManager.getColor("Panel.background"));
-        headerPanel.setBorder(BorderFactory.createCompoundBorder(
-            BorderFactory.createLineBorder(titleColor, 1),
-            BorderFactory.createEmptyBorder(5, 8, 5, 8)
-        ));
-        headerPanel.setAlignmentX(Component.LEFT_ALIGNMENT);
-
-        JLabel titleLabel = new JLabel("▶ " + icon + " " + title);
-        titleLabel.setForeground(titleColor);
-        titleLabel.setFont(new Font(Font.SANS_SERIF, Font.BOLD, 11));
-        titleLabel.setCursor(Cursor.getPredefinedCursor(Cursor.HAND_CURSOR));
-        headerPanel.add(titleLabel, BorderLayout.WEST);
-
-        // Create content panel (initially hidden)
-        JPanel contentPanel = new JPanel(new BorderLayout());
-        contentPanel.setBackground(UIManager.getColor("Panel.background"));
-        contentPanel.setBorder(BorderFactory.createCompoundBorder(
-            BorderFactory.createLineBorder(titleColor.darker(), 1),
-            BorderFactory.createEmptyBorder(8, 8, 8, 8)
-        ));
-        contentPanel.setVisible(false);
-        contentPanel.setAlignmentX(Component.LEFT_ALIGNMENT);
-
-        JTextArea contentArea = new JTextArea(content);
-        contentArea.setEditable(false);
-        contentArea.setLineWrap(true);
-        contentArea.setWrapStyleWord(true);
-        contentArea.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 10));
-        contentArea.setBackground(UIManager.getColor("Panel.background"));
-        contentArea.setForeground(UIManager.getColor("Label.foreground"));
-        contentArea.setBorder(null);
-
-        JScrollPane scrollPane = new JScrollPane(contentArea);
-        scrollPane.setPreferredSize(new Dimension(400, Math.min(content.length() / 4 + 50, 200)));
-        scrollPane.setBorder(null);
-        scrollPane.setBackground(UIManager.getColor("Panel.background"));
-        contentPanel.add(scrollPane, BorderLayout.CENTER);
+        return createCollapsiblePanel(title, () -> content, titleColor, icon);
+    }
 
-        // Add click listener to toggle visibility
-        headerPanel.addMouseListener(new java.awt.event.MouseAdapter() {
-            @Override
-            public void mouseClicked(java.awt.event.MouseEvent e) {
-                boolean isVisible = contentPanel.isVisible();
-                contentPanel.setVisible(!isVisible);
-                titleLabel.setText((isVisible ? "▶ " : "▼ ") + icon + " " + title);
-                containerPanel.revalidate();
-                containerPanel.repaint();
-            }
+    /**
+     * Creates a collapsible panel whose content is only produced and laid out when it is first expanded.
+     */
+    public static CollapsiblePanelResult createCollapsiblePanel(String title, Supplier<String> content, Color titleColor, String icon) {
+        return createDeferredCollapsiblePanel(title, content, UnaryOperator.identity(), titleColor, icon, text -> {
+            // Very large content only loads a window of the text at a time
+            JTextArea contentArea = PagedTextArea.isLarge(text) ? new PagedTextArea(text) : new JTextArea(text);
+            contentArea.setEditable(false);
+            contentArea.setLineWrap(true);
+            contentArea.setWrapStyleWord(true);
+            contentArea.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 10));
+            contentArea.setBackground(UIManager.getColor("Panel.background"));
+            contentArea.setForeground(UIManager.getColor("Label.foreground"));
+            contentArea.setBorder(null);
+            return contentArea;
         });
-
-        containerPanel.add(headerPanel);
-        containerPanel.add(contentPanel);
-
-        return new CollapsiblePanelResult(containerPanel, contentArea);
     }
 
     /**
@@ -107,6 +60,30 @@ public class UIUtils {
      * XML blocks like <available_skills> will have indentation-based coloring.
      */
     public static CollapsiblePanelResult createColoredXmlCollapsiblePanel(String title, String content, Color titleColor, String icon) {
+        return createColoredXmlCollapsiblePanel(title, () -> content, titleColor, icon);
+    }
+
+    /**
+     * Creates a colored XML collapsible panel whose content is only colored and laid out when it is first expanded.
+     */
+    public static CollapsiblePanelResult createColoredXmlCollapsiblePanel(String title, Supplier<String> content, Color titleColor, String icon) {
+        return createDeferredCollapsiblePanel(title, content, XmlColorizer::text, titleColor, icon, text -> {
+            // Use JTextPane for colored content, with the document built before it is attached
+            JTextPane textPane = new JTextPane(XmlColorizer.document(text));
+            textPane.setEditable(false);
+            textPane.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 10));
+            textPane.setBackground(UIManager.getColor("Panel.background"));
+            return textPane;
+        });
+    }
+
+    /**
+     * Creates the header and an empty content panel. The text component is built from the content
+     * the first time the panel is expanded, or when search reveals a match inside it.
+     */
+    private static CollapsiblePanelResult createDeferredCollapsiblePanel(String title, Supplier<String> content,
+                                                                         UnaryOperator<String> display, Color titleColor,
+                                                                         String icon, Function<String, JTextComponent> builder) {
         JPanel containerPanel = new JPanel();
         containerPanel.setLayout(new BoxLayout(containerPanel, BoxLayout.Y_AXIS));
         containerPanel.setBackground(UIManager.getColor("Panel.background"));
@@ -127,7 +104,7 @@ public class UIUtils {
         titleLabel.setCursor(Cursor.getPredefinedCursor(Cursor.HAND_CURSOR));
         headerPanel.add(titleLabel, BorderLayout.WEST);
 
-        // Create content panel (initially hidden)
+        // Create content panel (initially hidden and empty)
         JPanel contentPanel = new JPanel(new BorderLayout());
         contentPanel.setBackground(UIManager.getColor("Panel.background"));
         contentPanel.setBorder(BorderFactory.createCompoundBorder(
@@ -137,151 +114,251 @@ public class UIUtils {
         contentPanel.setVisible(false);
         contentPanel.setAlignmentX(Component.LEFT_ALIGNMENT);
 
-        // Use JTextPane for colored content
-        JTextPane textPane = new JTextPane();
-        textPane.setEditable(false);
-        textPane.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 10));
-        textPane.setBackground(UIManager.getColor("Panel.background"));
-
-        // Apply colored content
-        applyColoredXmlContent(textPane, content);
+        containerPanel.add(headerPanel);
+        containerPanel.add(contentPanel);
 
-        JScrollPane scrollPane = new JScrollPane(textPane);
-        scrollPane.setPreferredSize(new Dimension(400, Math.min(content.length() / 4 + 50, 200)));
-        scrollPane.setBorder(null);
-        scrollPane.setBackground(UIManager.getColor("Panel.background"));
-        contentPanel.add(scrollPane, BorderLayout.CENTER);
+        DeferredContent deferredContent = new DeferredContent(content, display, builder,
+            containerPanel, contentPanel, titleLabel, icon, title);
 
         // Add click listener to toggle visibility
         headerPanel.addMouseListener(new java.awt.event.MouseAdapter() {
             @Override
             public void mouseClicked(java.awt.event.MouseEvent e) {
-                boolean isVisible = contentPanel.isVisible();
-                contentPanel.setVisible(!isVisible);
-                titleLabel.setText((isVisible ? "▶ " : "▼ ") + icon + " " + title);
-                containerPanel.revalidate();
-                containerPanel.repaint();
+                deferredContent.setExpanded(!contentPanel.isVisible());
             }
         });
 
-        containerPanel.add(headerPanel);
-        containerPanel.add(contentPanel);
-
-        // Create a JTextArea wrapper for search compatibility
-        JTextArea searchableTextArea = new JTextArea(textPane.getText());
-        searchableTextArea.setVisible(false); // Hidden, just for search
-
-        return new CollapsiblePanelResult(containerPanel, searchableTextArea);
+        return new CollapsiblePanelResult(containerPanel, deferredContent);
     }
 
     /**
-     * Applies colored XML content to a JTextPane.
+     * Content of a collapsible panel that is built on first use. Doubles as the panel's search target:
+     * searching reads the displayed text without building anything, and revealing a match builds the
+     * text component and expands the panel.
      */
-    private static void applyColoredXmlContent(JTextPane textPane, String content) {
-        StyledDocument doc = textPane.getStyledDocument();
-        Color defaultColor = UIManager.getColor("Label.foreground");
-        if (defaultColor == null) {
-            defaultColor = Color.WHITE;
+    private static class DeferredContent implements SearchTarget {
+        private final UnaryOperator<String> display;
+        private final Function<String, JTextComponent> builder;
+        private final JPanel containerPanel;
+        private final JPanel contentPanel;
+        private final JLabel titleLabel;
+        private final String icon;
+        private String title;
+        private Supplier<String> content;
+        // Read by background searches
+        private volatile String text;
+        private JTextComponent textComponent;
+
+        public DeferredContent(Supplier<String> content, UnaryOperator<String> display,
+                               Function<String, JTextComponent> builder, JPanel containerPanel,
+                               JPanel contentPanel, JLabel titleLabel, String icon, String title) {
+            this.content = content;
+            this.display = display;
+            this.builder = builder;
+            this.containerPanel = containerPanel;
+            this.contentPanel = contentPanel;
+            this.titleLabel = titleLabel;
+            this.icon = icon;
+            this.title = title;
         }
 
-        // Check if content contains <available_skills> block
-        Matcher matcher = AVAILABLE_SKILLS_PATTERN.matcher(content);
-
-        int lastEnd = 0;
-        while (matcher.find()) {
-            // Add text before the match in default color
-            if (matcher.start() > lastEnd) {
-                appendStyledText(doc, content.substring(lastEnd, matcher.start()), defaultColor);
+        /**
+         * Points the panel at new content. The panel is collapsed and its text component discarded,
+         * so the new content is built on the next expand like in a new panel.
+         */
+        public void rebind(String title, Supplier<String> content) {
+            this.title = title;
+            this.content = content;
+            this.text = null;
+            if (textComponent != null) {
+                contentPanel.removeAll();
+                textComponent = null;
             }
+            setExpanded(false);
+        }
 
-            // Format and color the XML block
-            String openTag = matcher.group(1);
-            String xmlContent = matcher.group(2);
-            String closeTag = matcher.group(3);
-
-            // Add opening tag at indent level 0
-            appendStyledText(doc, openTag + "\n", INDENT_COLORS[0]);
+        /**
+         * Points the panel at another copy of the same content, keeping what was built from it.
+         * A null content unbinds the panel until it is rebound or retargeted.
+         */
+        public void retarget(Supplier<String> content) {
+            this.content = content;
+        }
 
-            // Format and color XML content with indentation
-            formatAndColorXmlContent(doc, xmlContent);
+        public void setExpanded(boolean expanded) {
+            if (expanded) {
+                build();
+            }
+            contentPanel.setVisible(expanded);
+            titleLabel.setText((expanded ? "▼ " : "▶ ") + icon + " " + title);
+            containerPanel.revalidate();
+            containerPanel.repaint();
+        }
 
-            // Add closing tag at indent level 0
-            appendStyledText(doc, closeTag, INDENT_COLORS[0]);
+        private JTextComponent build() {
+            if (textComponent == null) {
+                String rawContent = content.get();
+                textComponent = builder.apply(rawContent);
 
-            lastEnd = matcher.end();
+                JScrollPane scrollPane = new JScrollPane(textComponent);
+                scrollPane.setPreferredSize(new Dimension(400, Math.min(rawContent.length() / 4 + 50, 200)));
+                scrollPane.setBorder(null);
+                scrollPane.setBackground(UIManager.getColor("Panel.background"));
+                contentPanel.add(scrollPane, BorderLayout.CENTER);
+            }
+            return textComponent;
         }
 
-        // Add remaining text after last match
-        if (lastEnd < content.length()) {
-            appendStyledText(doc, content.substring(lastEnd), defaultColor);
+        @Override
+        public String getText() {
+            Supplier<String> source = content;
+            if (text == null && source != null) {
+                text = display.apply(source.get());
+            }
+            return text != null ? text : "";
         }
-    }
 
-    /**
-     * Formats XML content with indentation and applies colors based on indent level.
-     */
-    private static void formatAndColorXmlContent(StyledDocument doc, String content) {
-        int indentLevel = 1;
-        String[] lines = content.split("\n");
+        @Override
+        public JTextComponent getTextComponent() {
+            return textComponent;
+        }
 
-        for (String line : lines) {
-            String trimmed = line.trim();
-            if (trimmed.isEmpty()) {
-                continue;
+        @Override
+        public JTextComponent reveal() {
+            if (!contentPanel.isVisible()) {
+                setExpanded(true);
             }
+            return textComponent;
+        }
 
-            // Check if this is a closing tag
-            boolean isClosingTag = trimmed.startsWith("</");
-            // Check if this is an opening tag (but not self-closing)
-            boolean isOpeningTag = trimmed.startsWith("<") && !trimmed.startsWith("</")
-                && !trimmed.endsWith("/>");
+        @Override
+        public int toViewOffset(int offset) {
+            return textComponent instanceof PagedTextArea ? ((PagedTextArea) textComponent).toViewOffset(offset) : offset;
+        }
 
-            // Decrease indent before closing tags
-            if (isClosingTag) {
-                indentLevel = Math.max(1, indentLevel - 1);
+        @Override
+        public void showRange(int start, int end) {
+            if (textComponent instanceof PagedTextArea) {
+                ((PagedTextArea) textComponent).showRange(start, end);
             }
+        }
+    }
 
-            // Get color for current indent level
-            Color lineColor = INDENT_COLORS[indentLevel % INDENT_COLORS.length];
+    public static class CollapsiblePanelResult {
+        public final JPanel panel;
+        public final SearchTarget searchTarget;
+        private final DeferredContent content;
 
-            // Build indented line
-            StringBuilder indentedLine = new StringBuilder();
-            for (int i = 0; i < indentLevel; i++) {
-                indentedLine.append(" ");
-            }
-            indentedLine.append(trimmed).append("\n");
+        private CollapsiblePanelResult(JPanel panel, DeferredContent content) {
+            this.panel = panel;
+            this.searchTarget = content;
+            this.content = content;
+        }
 
-            // Append with color
-            appendStyledText(doc, indentedLine.toString(), lineColor);
+        /**
+         * Reuses the panel for another title and content, collapsing it.
+         */
+        public void rebind(String title, Supplier<String> content) {
+            this.content.rebind(title, content);
+        }
 
-            // Increase indent after opening tags
-            if (isOpeningTag && !trimmed.contains("</")) {
-                indentLevel++;
-            }
+        /**
+         * Points the panel at another copy of the same content, keeping it expanded or collapsed.
+         */
+        public void retarget(Supplier<String> content) {
+            this.content.retarget(content);
+        }
+
+        /**
+         * Drops the panel's content, so a panel kept for reuse doesn't keep its message alive.
+         * It must be rebound or retargeted before it is shown again.
+         */
+        public void release() {
+            this.content.retarget(null);
         }
     }
 
     /**
-     * Appends styled text to a StyledDocument with the specified color.
+     * A searchable piece of conversation text. Its text component may not exist until it is revealed,
+     * e.g. when the message it belongs to is outside the viewport of a virtualized list or inside a
+     * collapsed panel that was never expanded.
      */
-    private static void appendStyledText(StyledDocument doc, String text, Color color) {
-        Style style = doc.addStyle("style_" + System.nanoTime(), null);
-        StyleConstants.setForeground(style, color);
+    public interface SearchTarget {
+        /**
+         * Returns the text to search, identical to the text the component displays.
+         */
+        String getText();
+
+        /**
+         * Returns a supplier of getText() that the background search thread may call.
+         * Called on the EDT when a search starts.
+         */
+        default Supplier<String> snapshotText() {
+            return this::getText;
+        }
 
-        try {
-            doc.insertString(doc.getLength(), text, style);
-        } catch (BadLocationException e) {
-            // Ignore
+        /**
+         * Returns the component currently showing this text, or null if it has not been built.
+         */
+        JTextComponent getTextComponent();
+
+        /**
+         * Builds the component if needed, brings it into the view and returns it.
+         */
+        JTextComponent reveal();
+
+        /**
+         * Maps an offset in getText() to the component's document, or returns -1 if that part of the
+         * text is not displayed, e.g. in a paged text area.
+         */
+        default int toViewOffset(int offset) {
+            return offset;
         }
-    }
 
-    public static class CollapsiblePanelResult {
-        public final JPanel panel;
-        public final JTextArea textArea;
+        /**
+         * Makes sure the given range of getText() is displayed in the component.
+         */
+        default void showRange(int start, int end) {
+        }
 
-        public CollapsiblePanelResult(JPanel panel, JTextArea textArea) {
-            this.panel = panel;
-            this.textArea = textArea;
+        /**
+         * Wraps a text component that always exists.
+         */
+        static SearchTarget of(JTextComponent textComponent) {
+            if (textComponent instanceof PagedTextArea) {
+                return ((PagedTextArea) textComponent).getSearchTarget();
+            }
+            return new SearchTarget() {
+                @Override
+                public String getText() {
+                    return textComponent.getText();
+                }
+
+                @Override
+                public Supplier<String> snapshotText() {
+                    // The document may only be read on the EDT
+                    String text = textComponent.getText();
+                    return () -> text;
+                }
+
+                @Override
+                public JTextComponent getTextComponent() {
+                    return textComponent;
+                }
+
+                @Override
+                public JTextComponent reveal() {
+                    return textComponent;
+                }
+            };
+        }
+
+        static List<SearchTarget> of(List<? extends JTextComponent> textComponents) {
+            List<SearchTarget> targets = new ArrayList<>();
+            for (JTextComponent textComponent : textComponents) {
+                targets.add(of(textComponent));
+            }
+            return targets;
         }
     }
 
@@ -289,105 +366,370 @@ public class UIUtils {
      * Search highlighter for text areas.
      */
     public static class SearchHighlighter {
-        private final List<JTextArea> textAreas;
+        private static final ExecutorService SEARCH_EXECUTOR = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "LLM search");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.NORM_PRIORITY - 1);
+            return thread;
+        });
+
+        // Minimum time between batches of matches handed to the EDT while a search runs
+        private static final long PUBLISH_INTERVAL_NANOS = 50_000_000L;
+        // Budgets per search; a search that exceeds either keeps the matches found so far
+        private static final long MAX_SEARCH_NANOS = 3_000_000_000L;
+        private static final int MAX_MATCHES = 50_000;
+        // Highlights kept for matches outside the viewport; more are removed as the view moves on
+        private static final int MAX_OFFSCREEN_HIGHLIGHTS = 500;
+
+        private final List<SearchTarget> targets;
+        // Incremented for every search; a running search stops once it no longer matches
+        private final AtomicLong searchGeneration = new AtomicLong();
+        private boolean searching;
+        private boolean truncated;
+        // Incremented when the targets change; the index is rebuilt for the new targets on the next search
+        private int targetsVersion;
+        // Only used on the search thread
+        private SearchIndex index;
+        private int indexVersion = -1;
         private final Highlighter.HighlightPainter painter;
         private final Highlighter.HighlightPainter currentPainter;
         private final List<HighlightInfo> highlightInfos;
         private int currentIndex = -1;
+        private boolean visibleUpdatePending;
+        // The last search, run again when the targets change
+        private String lastSearchText;
+        private boolean lastUseRegex;
+        private boolean lastCaseSensitive;
+        private Runnable lastOnProgress;
 
         public SearchHighlighter(List<JTextArea> textAreas) {
-            this.textAreas = textAreas;
+            this.targets = SearchTarget.of(textAreas);
             this.painter = new DefaultHighlighter.DefaultHighlightPainter(Color.YELLOW);
             this.currentPainter = new DefaultHighlighter.DefaultHighlightPainter(Color.ORANGE);
             this.highlightInfos = new ArrayList<>();
         }
 
         public void updateTextAreas(List<JTextArea> newTextAreas) {
-            this.textAreas.clear();
-            this.textAreas.addAll(newTextAreas);
+            updateTargets(SearchTarget.of(newTextAreas));
         }
 
-        public void clearHighlights() {
-            for (JTextArea textArea : textAreas) {
-                textArea.getHighlighter().removeAllHighlights();
+        /**
+         * Replaces the targets. Matches in the old targets are dropped and the last search, if any,
+         * runs again over the new ones.
+         */
+        public void updateTargets(List<SearchTarget> newTargets) {
+            cancelSearch();
+            clearHighlights();
+            targetsVersion++;
+            this.targets.clear();
+            this.targets.addAll(newTargets);
+
+            if (lastSearchText != null) {
+                search(lastSearchText, lastUseRegex, lastCaseSensitive, lastOnProgress);
             }
+        }
+
+        /**
+         * Re-applies the current highlights, e.g. after text areas were built for more targets.
+         */
+        public void refreshHighlights() {
+            if (!highlightInfos.isEmpty()) {
+                applyHighlights();
+            }
+        }
+
+        /**
+         * Updates the highlights for the matches that scrolled into view, at most once per event batch.
+         */
+        public void scheduleVisibleUpdate() {
+            if (visibleUpdatePending || highlightInfos.isEmpty()) return;
+
+            visibleUpdatePending = true;
+            SwingUtilities.invokeLater(() -> {
+                visibleUpdatePending = false;
+                updateVisibleHighlights();
+            });
+        }
+
+        public void clearHighlights() {
+            removeAllHighlights();
             highlightInfos.clear();
             currentIndex = -1;
         }
 
-        public int searchAndHighlight(String searchText, boolean useRegex, boolean caseSensitive) {
+        private void removeAllHighlights() {
+            for (SearchTarget target : targets) {
+                JTextComponent textComponent = target.getTextComponent();
+                if (textComponent != null) {
+                    textComponent.getHighlighter().removeAllHighlights();
+                }
+            }
+        }
+
+        /**
+         * Starts a search over all targets on the background search thread, replacing any running one.
+         * Matches are highlighted in batches as they are found; onProgress runs on the EDT after each
+         * batch and once more when the search is finished. Must be called on the EDT.
+         */
+        public void search(String searchText, boolean useRegex, boolean caseSensitive, Runnable onProgress) {
+            long generation = searchGeneration.incrementAndGet();
             clearHighlights();
+            lastSearchText = searchText;
+            lastUseRegex = useRegex;
+            lastCaseSensitive = caseSensitive;
+            lastOnProgress = onProgress;
+            searching = false;
+            truncated = false;
 
             if (searchText == null || searchText.trim().isEmpty()) {
-                return 0;
+                onProgress.run();
+                return;
             }
 
             Pattern pattern;
             try {
-                if (useRegex) {
-                    int flags = caseSensitive ? 0 : Pattern.CASE_INSENSITIVE;
-                    pattern = Pattern.compile(searchText, flags);
-                } else {
-                    String escapedText = Pattern.quote(searchText);
-                    int flags = caseSensitive ? 0 : Pattern.CASE_INSENSITIVE;
-                    pattern = Pattern.compile(escapedText, flags);
-                }
+                int flags = caseSensitive ? 0 : Pattern.CASE_INSENSITIVE;
+                pattern = Pattern.compile(useRegex ? searchText : Pattern.quote(searchText), flags);
             } catch (PatternSyntaxException e) {
-                return 0; // Invalid regex
+                onProgress.run(); // Invalid regex
+                return;
             }
 
-            for (JTextArea textArea : textAreas) {
-                String text = textArea.getText();
-                if (text == null || text.isEmpty()) continue;
+            searching = true;
+            List<SearchTarget> snapshot = new ArrayList<>(targets);
+            List<Supplier<String>> texts = new ArrayList<>();
+            for (SearchTarget target : snapshot) {
+                texts.add(target.snapshotText());
+            }
+            int version = targetsVersion;
+            String literal = useRegex ? null : searchText;
+            SEARCH_EXECUTOR.execute(
+                () -> findMatches(generation, pattern, literal, caseSensitive, snapshot, texts, version, onProgress));
+        }
 
-                Matcher matcher = pattern.matcher(text);
-                while (matcher.find()) {
-                    highlightInfos.add(new HighlightInfo(textArea, matcher.start(), matcher.end()));
+        /**
+         * Stops the running search, keeping the matches found so far.
+         */
+        public void cancelSearch() {
+            searchGeneration.incrementAndGet();
+            searching = false;
+        }
+
+        /**
+         * Returns whether a search is still running, i.e. the match count may still grow.
+         */
+        public boolean isSearching() {
+            return searching;
+        }
+
+        /**
+         * Returns whether the last search stopped at its time or match budget, so not all matches were found.
+         */
+        public boolean isTruncated() {
+            return truncated;
+        }
+
+        /**
+         * Returns the index over the targets' texts, building it on the first literal search after
+         * the targets changed. Runs on the search thread.
+         */
+        private SearchIndex indexFor(List<Supplier<String>> texts, int version) {
+            if (index == null || indexVersion != version) {
+                index = new SearchIndex(texts);
+                indexVersion = version;
+            }
+            return index;
+        }
+
+        private void findMatches(long generation, Pattern pattern, String literal, boolean caseSensitive,
+                                 List<SearchTarget> snapshot, List<Supplier<String>> texts, int version,
+                                 Runnable onProgress) {
+            List<HighlightInfo> batch = new ArrayList<>();
+
+            // Literal queries are answered by the index, which only reads the texts that can match
+            if (SearchIndex.canNarrow(literal)) {
+                List<SearchIndex.Hit> hits = indexFor(texts, version).find(literal, caseSensitive, MAX_MATCHES);
+                for (SearchIndex.Hit hit : hits) {
+                    batch.add(new HighlightInfo(snapshot.get(hit.document), hit.start, hit.end));
+                }
+                if (searchGeneration.get() == generation) {
+                    publish(generation, batch, true, hits.size() >= MAX_MATCHES, onProgress);
                 }
+                return;
             }
 
-            // Apply highlights with all in yellow initially
-            applyHighlights();
+            // Regexes run over text that gives up once the time budget is spent or the search is stale
+            long deadline = System.nanoTime() + MAX_SEARCH_NANOS;
+            long lastPublish = System.nanoTime();
+            int matches = 0;
+            boolean stoppedEarly = false;
 
-            // Set to -1 so the first navigateToNext() call will set it to 0
-            currentIndex = -1;
+            try {
+                search:
+                for (int i = 0; i < snapshot.size(); i++) {
+                    if (searchGeneration.get() != generation) return;
+
+                    SearchTarget target = snapshot.get(i);
+                    String text = texts.get(i).get();
+                    if (text == null || text.isEmpty()) continue;
+
+                    Matcher matcher = pattern.matcher(new BoundedText(text, deadline, generation, searchGeneration));
+                    while (matcher.find()) {
+                        batch.add(new HighlightInfo(target, matcher.start(), matcher.end()));
+                        if (++matches >= MAX_MATCHES) {
+                            stoppedEarly = true;
+                            break search;
+                        }
 
-            return highlightInfos.size();
+                        if (System.nanoTime() - lastPublish >= PUBLISH_INTERVAL_NANOS) {
+                            if (searchGeneration.get() != generation) return;
+                            publish(generation, batch, false, false, onProgress);
+                            batch = new ArrayList<>();
+                            lastPublish = System.nanoTime();
+                        }
+                    }
+                }
+            } catch (SearchStoppedException | StackOverflowError e) {
+                // A pattern too deep for the thread's stack is reported like one that ran out of time
+                if (searchGeneration.get() != generation) return;
+                stoppedEarly = true;
+            }
+
+            publish(generation, batch, true, stoppedEarly, onProgress);
         }
 
+        private void publish(long generation, List<HighlightInfo> batch, boolean done, boolean stoppedEarly,
+                             Runnable onProgress) {
+            SwingUtilities.invokeLater(() -> {
+                if (searchGeneration.get() != generation) return;
+
+                highlightInfos.addAll(batch);
+                updateVisibleHighlights();
+                if (done) {
+                    searching = false;
+                    truncated = stoppedEarly;
+                }
+                onProgress.run();
+            });
+        }
+
+        /**
+         * Removes all highlights and adds those of the matches in or near the viewport again,
+         * e.g. after components were rebuilt.
+         */
         private void applyHighlights() {
-            // Clear existing highlights
-            for (JTextArea textArea : textAreas) {
-                textArea.getHighlighter().removeAllHighlights();
+            removeAllHighlights();
+            for (HighlightInfo info : highlightInfos) {
+                info.tag = null;
             }
+            updateVisibleHighlights();
+        }
+
+        /**
+         * Adds highlights for the matches in or near the visible part of their components, and
+         * removes offscreen highlights beyond a small number so they don't accumulate while scrolling.
+         */
+        private void updateVisibleHighlights() {
+            Map<JTextComponent, int[]> visibleRanges = new IdentityHashMap<>();
+            int offscreen = 0;
 
-            // Apply highlights with appropriate colors
             for (int i = 0; i < highlightInfos.size(); i++) {
                 HighlightInfo info = highlightInfos.get(i);
-                Highlighter.HighlightPainter paintToUse = (i == currentIndex) ? currentPainter : painter;
+                JTextComponent textComponent = info.target.getTextComponent();
+                if (info.tag != null && info.taggedComponent != textComponent) {
+                    // The component was replaced; its highlights went with it
+                    info.tag = null;
+                }
+                if (textComponent == null) continue;
 
-                try {
-                    info.textArea.getHighlighter().addHighlight(info.start, info.end, paintToUse);
-                } catch (BadLocationException e) {
-                    // Skip this highlight
+                int[] range = visibleRanges.computeIfAbsent(textComponent, SearchHighlighter::visibleRange);
+                int start = info.target.toViewOffset(info.start);
+                boolean visible = start >= 0 && start <= range[1] && start + (info.end - info.start) >= range[0];
+
+                if (visible && info.tag == null) {
+                    addHighlight(i);
+                } else if (!visible && info.tag != null && i != currentIndex && ++offscreen > MAX_OFFSCREEN_HIGHLIGHTS) {
+                    removeHighlight(info);
                 }
             }
         }
 
+        /**
+         * Returns the range of view offsets shown in the component's visible area, extended by one
+         * visible height above and below. Empty if the component is not showing.
+         */
+        private static int[] visibleRange(JTextComponent textComponent) {
+            Rectangle visible = textComponent.isShowing() ? textComponent.getVisibleRect() : null;
+            if (visible == null || visible.isEmpty()) {
+                return new int[] {1, 0};
+            }
+
+            int top = Math.max(0, visible.y - visible.height);
+            int bottom = visible.y + 2 * visible.height;
+            int start = textComponent.viewToModel2D(new Point(0, top));
+            int end = textComponent.viewToModel2D(new Point(textComponent.getWidth(), bottom));
+            return new int[] {Math.max(0, start), end < 0 ? textComponent.getDocument().getLength() : end};
+        }
+
+        private void addHighlight(int index) {
+            HighlightInfo info = highlightInfos.get(index);
+            JTextComponent textComponent = info.target.getTextComponent();
+            if (textComponent == null) return;
+
+            // Skip matches in parts of the text that are not displayed
+            int start = info.target.toViewOffset(info.start);
+            int end = info.end > info.start ? info.target.toViewOffset(info.end - 1) + 1 : start;
+            if (start < 0 || end - start != info.end - info.start) return;
+
+            Highlighter.HighlightPainter paintToUse = (index == currentIndex) ? currentPainter : painter;
+
+            try {
+                info.tag = textComponent.getHighlighter().addHighlight(start, end, paintToUse);
+                info.taggedComponent = textComponent;
+            } catch (BadLocationException e) {
+                // Skip this highlight
+            }
+        }
+
+        private void removeHighlight(HighlightInfo info) {
+            if (info.tag != null) {
+                info.taggedComponent.getHighlighter().removeHighlight(info.tag);
+                info.tag = null;
+            }
+        }
+
         public void navigateToNext(JScrollPane scrollPane) {
             if (highlightInfos.isEmpty()) return;
 
-            currentIndex = (currentIndex + 1) % highlightInfos.size();
-            applyHighlights();
-            scrollToHighlight(scrollPane, currentIndex);
+            moveCurrent(scrollPane, (currentIndex + 1) % highlightInfos.size());
         }
 
         public void navigateToPrevious(JScrollPane scrollPane) {
             if (highlightInfos.isEmpty()) return;
 
-            currentIndex = currentIndex <= 0 ? highlightInfos.size() - 1 : currentIndex - 1;
-            applyHighlights();
+            moveCurrent(scrollPane, currentIndex <= 0 ? highlightInfos.size() - 1 : currentIndex - 1);
+        }
+
+        /**
+         * Makes the given match current, repainting only it and the previous current match.
+         */
+        private void moveCurrent(JScrollPane scrollPane, int index) {
+            int previous = currentIndex;
+            currentIndex = index;
             scrollToHighlight(scrollPane, currentIndex);
+
+            if (previous >= 0 && previous < highlightInfos.size()) {
+                HighlightInfo info = highlightInfos.get(previous);
+                if (info.tag != null) {
+                    removeHighlight(info);
+                    addHighlight(previous);
+                }
+            }
+            removeHighlight(highlightInfos.get(currentIndex));
+            addHighlight(currentIndex);
+
+            // Scrolling may have brought other matches into view
+            updateVisibleHighlights();
         }
 
         public int getCurrentIndex() {
@@ -403,15 +745,24 @@ public class UIUtils {
 
             HighlightInfo info = highlightInfos.get(index);
 
-            // Check if the text area is inside a collapsed panel and expand it if needed
-            expandCollapsedPanelIfNeeded(info.textArea);
+            // Make sure the text component exists and is in view
+            JTextComponent textComponent = info.target.reveal();
+            if (textComponent == null) return;
+
+            // Check if the text component is inside a collapsed panel and expand it if needed
+            expandCollapsedPanelIfNeeded(textComponent);
+
+            // Load the match if it is in a part of the text that is not displayed yet
+            info.target.showRange(info.start, info.end);
+            int start = info.target.toViewOffset(info.start);
+            if (start < 0) return;
 
             try {
                 // Calculate the position to scroll to
-                Rectangle rect = info.textArea.modelToView(info.start);
+                Rectangle rect = textComponent.modelToView(start);
                 if (rect != null) {
                     // Convert to parent coordinates
-                    Point location = SwingUtilities.convertPoint(info.textArea, rect.getLocation(), scrollPane.getViewport().getView());
+                    Point location = SwingUtilities.convertPoint(textComponent, rect.getLocation(), scrollPane.getViewport().getView());
                     scrollPane.getViewport().setViewPosition(new Point(0, Math.max(0, location.y - 50)));
                 }
             } catch (BadLocationException e) {
@@ -419,9 +770,9 @@ public class UIUtils {
             }
         }
 
-        private void expandCollapsedPanelIfNeeded(JTextArea textArea) {
+        private void expandCollapsedPanelIfNeeded(JTextComponent textComponent) {
             // Walk up the component hierarchy to find collapsible panels
-            Component current = textArea;
+            Component current = textComponent;
             while (current != null) {
                 current = current.getParent();
 
@@ -472,13 +823,70 @@ public class UIUtils {
             return null;
         }
 
+        /**
+         * Text that a regex runs over, which stops the match by throwing once the deadline has passed
+         * or a newer search has started. Checked every few thousand character reads, which is what
+         * a backtracking pattern spends its time on.
+         */
+        private static class BoundedText implements CharSequence {
+            private static final int CHECK_INTERVAL = 4096;
+
+            private final String text;
+            private final long deadline;
+            private final long generation;
+            private final AtomicLong currentGeneration;
+            private int reads;
+
+            public BoundedText(String text, long deadline, long generation, AtomicLong currentGeneration) {
+                this.text = text;
+                this.deadline = deadline;
+                this.generation = generation;
+                this.currentGeneration = currentGeneration;
+            }
+
+            @Override
+            public char charAt(int index) {
+                if (++reads >= CHECK_INTERVAL) {
+                    reads = 0;
+                    if (System.nanoTime() > deadline || currentGeneration.get() != generation) {
+                        throw new SearchStoppedException();
+                    }
+                }
+                return text.charAt(index);
+            }
+
+            @Override
+            public int length() {
+                return text.length();
+            }
+
+            @Override
+            public CharSequence subSequence(int start, int end) {
+                return text.subSequence(start, end);
+            }
+
+            @Override
+            public String toString() {
+                return text;
+            }
+        }
+
+        private static class SearchStoppedException extends RuntimeException {
+            public SearchStoppedException() {
+                super(null, null, false, false);
+            }
+        }
+
         private static class HighlightInfo {
-            public final JTextArea textArea;
+            public final SearchTarget target;
             public final int start;
             public final int end;
+            // Highlight currently added for this match, and the component it was added to
+            public Object tag;
+            public JTextComponent taggedComponent;
 
-            public HighlightInfo(JTextArea textArea, int start, int end) {
-                this.textArea = textArea;
+            public HighlightInfo(SearchTarget target, int start, int end) {
+                this.target = target;
                 this.start = start;
                 this.end = end;
             }
@@ -525,8 +933,13 @@ public class UIUtils {
             int current = highlighter.getCurrentIndex();
             String searchText = searchField.getText();
 
-            if (total > 0) {
-                resultsLabel.setText((current + 1) + "/" + total + " matches");
+            String truncated = highlighter.isTruncated() ? " (search truncated)" : "";
+            if (highlighter.isSearching()) {
+                resultsLabel.setText(total + " matches…");
+            } else if (total > 0) {
+                resultsLabel.setText((current + 1) + "/" + total + " matches" + truncated);
+            } else if (highlighter.isTruncated()) {
+                resultsLabel.setText("No matches (search truncated)");
             } else if (searchText.isEmpty()) {
                 resultsLabel.setText("");
             } else {
@@ -534,56 +947,38 @@ public class UIUtils {
             }
         };
 
-        // Search functionality
-        DocumentListener searchListener = new DocumentListener() {
-            private void performSearch() {
-                String searchText = searchField.getText();
-                boolean useRegex = regexCheckBox.isSelected();
-                boolean caseSensitive = caseSensitiveCheckBox.isSelected();
-
-                int results = highlighter.searchAndHighlight(searchText, useRegex, caseSensitive);
-
-                if (results > 0) {
-                    highlighter.navigateToNext(scrollPane);
-                }
-
-                updateResultsLabel.run();
+        // Search functionality; matches arrive in batches from the background search
+        Runnable onSearchProgress = () -> {
+            // Go to the first match as soon as there is one
+            if (highlighter.getCurrentIndex() < 0 && highlighter.getTotalMatches() > 0) {
+                highlighter.navigateToNext(scrollPane);
             }
+            updateResultsLabel.run();
+        };
+        Runnable performSearch = () -> highlighter.search(searchField.getText(),
+            regexCheckBox.isSelected(), caseSensitiveCheckBox.isSelected(), onSearchProgress);
 
-            public void insertUpdate(DocumentEvent e) { performSearch(); }
-            public void removeUpdate(DocumentEvent e) { performSearch(); }
-            public void changedUpdate(DocumentEvent e) { performSearch(); }
+        // Wait for a pause in typing before searching
+        Timer searchTimer = new Timer(SEARCH_DELAY_MILLIS, e -> performSearch.run());
+        searchTimer.setRepeats(false);
+
+        DocumentListener searchListener = new DocumentListener() {
+            public void insertUpdate(DocumentEvent e) { searchTimer.restart(); }
+            public void removeUpdate(DocumentEvent e) { searchTimer.restart(); }
+            public void changedUpdate(DocumentEvent e) { searchTimer.restart(); }
         };
 
         searchField.getDocument().addDocumentListener(searchListener);
         regexCheckBox.addActionListener(e -> {
-            String searchText = searchField.getText();
-            if (!searchText.isEmpty()) {
-                boolean useRegex = regexCheckBox.isSelected();
-                boolean caseSensitive = caseSensitiveCheckBox.isSelected();
-
-                int results = highlighter.searchAndHighlight(searchText, useRegex, caseSensitive);
-
-                if (results > 0) {
-                    highlighter.navigateToNext(scrollPane);
-                }
-
-                updateResultsLabel.run();
+            if (!searchField.getText().isEmpty()) {
+                searchTimer.stop();
+                performSearch.run();
             }
         });
         caseSensitiveCheckBox.addActionListener(e -> {
-            String searchText = searchField.getText();
-            if (!searchText.isEmpty()) {
-                boolean useRegex = regexCheckBox.isSelected();
-                boolean caseSensitive = caseSensitiveCheckBox.isSelected();
-
-                int results = highlighter.searchAndHighlight(searchText, useRegex, caseSensitive);
-
-                if (results > 0) {
-                    highlighter.navigateToNext(scrollPane);
-                }
-
-                updateResultsLabel.run();
+            if (!searchField.getText().isEmpty()) {
+                searchTimer.stop();
+                performSearch.run();
             }
         });
 
@@ -598,11 +993,18 @@ public class UIUtils {
         });
         closeButton.addActionListener(e -> searchPanel.setVisible(false));
 
+        // Matches are only highlighted near the viewport, so highlight more as it moves
+        scrollPane.getViewport().addChangeListener(e -> highlighter.scheduleVisibleUpdate());
+
         // Keyboard shortcuts
         searchField.addKeyListener(new KeyListener() {
             public void keyPressed(KeyEvent e) {
                 if (e.getKeyCode() == KeyEvent.VK_ENTER) {
-                    if (e.isShiftDown()) {
+                    if (searchTimer.isRunning()) {
+                        // Search right away instead of waiting for the typing pause
+                        searchTimer.stop();
+                        performSearch.run();
+                    } else if (e.isShiftDown()) {
                         highlighter.navigateToPrevious(scrollPane);
                     } else {
                         highlighter.navigateToNext(scrollPane);
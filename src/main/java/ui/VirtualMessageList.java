@@ -0,0 +1,427 @@
+package ui;
+
+import core.ConversationMessage;
+import javax.swing.*;
+import javax.swing.event.ChangeListener;
+import javax.swing.text.JTextComponent;
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Scrollable list of conversation messages that only builds components for the messages in or
+ * near the viewport. Messages that have not been laid out use an estimated height, which is
+ * replaced by the measured height once the row has been built. Rows scrolled out of range are
+ * returned to a component pool and taken from it again when rows are built.
+ */
+public class VirtualMessageList extends JPanel implements Scrollable {
+    // Extra viewport heights kept built above and below the visible area
+    private static final int OVERSCAN_VIEWPORTS = 1;
+    // Layout passes allowed to settle the visible range after measured heights replace estimates
+    private static final int MAX_LAYOUT_PASSES = 3;
+    private static final int DEFAULT_WIDTH = 600;
+
+    private final List<ConversationMessage> messages;
+    private final LLMConversationRenderer renderer;
+    private final MessageComponentPool pool;
+    private final int[] heights;
+    private final boolean[] measured;
+    // tops[i] is the y position of row i; tops[messages.size()] is the total height
+    private final int[] tops;
+    private final Map<Integer, Row> rows = new HashMap<>();
+    private final List<UIUtils.SearchTarget> searchTargets = new ArrayList<>();
+    private final ChangeListener viewportListener = e -> layoutRows();
+
+    private JViewport viewport;
+    private int layoutWidth = -1;
+    private boolean layingOut;
+    private Runnable rowsChangedListener;
+
+    public VirtualMessageList(List<ConversationMessage> messages, LLMConversationRenderer renderer,
+                              MessageComponentPool pool) {
+        super(null);
+        this.messages = messages;
+        this.renderer = renderer;
+        this.pool = pool;
+        this.heights = new int[messages.size()];
+        this.measured = new boolean[messages.size()];
+        this.tops = new int[messages.size() + 1];
+        setBackground(UIManager.getColor("Panel.background"));
+
+        for (int i = 0; i < messages.size(); i++) {
+            int messageIndex = i;
+            List<Supplier<String>> texts = renderer.searchableTexts(messages.get(i));
+            for (int j = 0; j < texts.size(); j++) {
+                searchTargets.add(new RowSearchTarget(messageIndex, j, texts.get(j)));
+            }
+        }
+
+        estimateHeights(DEFAULT_WIDTH);
+    }
+
+    /**
+     * Returns a search target for every text component the list can build.
+     */
+    public List<UIUtils.SearchTarget> getSearchTargets() {
+        return searchTargets;
+    }
+
+    /**
+     * Sets a callback that runs after rows were built or discarded, e.g. to re-apply search highlights.
+     */
+    public void setRowsChangedListener(Runnable listener) {
+        this.rowsChangedListener = listener;
+    }
+
+    /**
+     * Scrolls to the end of the conversation.
+     */
+    public void scrollToEnd() {
+        if (viewport == null || messages.isEmpty()) {
+            return;
+        }
+        // Heights near the end are only known once those rows are built, so settle over a few passes
+        for (int pass = 0; pass < MAX_LAYOUT_PASSES; pass++) {
+            int y = Math.max(0, tops[messages.size()] - viewport.getExtentSize().height);
+            viewport.setViewPosition(new Point(0, y));
+            layoutRows();
+        }
+    }
+
+    /**
+     * Builds the row for the given message if needed and scrolls it into view.
+     */
+    public Row revealRow(int index) {
+        if (viewport != null) {
+            Rectangle view = viewport.getViewRect();
+            if (tops[index] < view.y || tops[index] >= view.y + view.height) {
+                viewport.setViewPosition(new Point(0, tops[index]));
+            }
+        }
+        layoutRows();
+
+        Row row = rows.get(index);
+        if (row == null) {
+            // Not attached to a viewport; build the row in place and keep it, so it is released like the others
+            row = buildRow(index);
+            rows.put(index, row);
+            add(row.panel);
+            measureRow(index, row, layoutWidth > 0 ? layoutWidth : DEFAULT_WIDTH);
+            recomputeTops();
+            placeRow(index, row);
+        }
+        return row;
+    }
+
+    @Override
+    public void addNotify() {
+        super.addNotify();
+        Container parent = getParent();
+        if (parent instanceof JViewport) {
+            viewport = (JViewport) parent;
+            viewport.addChangeListener(viewportListener);
+        }
+    }
+
+    @Override
+    public void removeNotify() {
+        if (viewport != null) {
+            viewport.removeChangeListener(viewportListener);
+            viewport = null;
+        }
+        super.removeNotify();
+    }
+
+    @Override
+    public void doLayout() {
+        layoutRows();
+    }
+
+    @Override
+    public Dimension getPreferredSize() {
+        int width = layoutWidth > 0 ? layoutWidth : DEFAULT_WIDTH;
+        return new Dimension(width, tops[messages.size()]);
+    }
+
+    @Override
+    public Dimension getPreferredScrollableViewportSize() {
+        return getPreferredSize();
+    }
+
+    @Override
+    public int getScrollableUnitIncrement(Rectangle visibleRect, int orientation, int direction) {
+        return 16;
+    }
+
+    @Override
+    public int getScrollableBlockIncrement(Rectangle visibleRect, int orientation, int direction) {
+        return orientation == SwingConstants.VERTICAL ? visibleRect.height : visibleRect.width;
+    }
+
+    @Override
+    public boolean getScrollableTracksViewportWidth() {
+        return true;
+    }
+
+    @Override
+    public boolean getScrollableTracksViewportHeight() {
+        return false;
+    }
+
+    /**
+     * Builds the rows that intersect the viewport (plus overscan), discards the others and
+     * positions everything, keeping the first visible row at the same screen position.
+     */
+    private void layoutRows() {
+        if (layingOut || viewport == null || messages.isEmpty()) {
+            return;
+        }
+        layingOut = true;
+        try {
+            int width = viewport.getExtentSize().width;
+            if (width <= 0) {
+                return;
+            }
+            if (width != layoutWidth) {
+                // Wrapped text changes height with the width, so every measurement is stale
+                layoutWidth = width;
+                Arrays.fill(measured, false);
+                estimateHeights(width);
+            }
+
+            boolean rowsChanged = false;
+            for (int pass = 0; pass < MAX_LAYOUT_PASSES; pass++) {
+                Rectangle view = viewport.getViewRect();
+                int anchor = indexAt(view.y);
+                int anchorOffset = view.y - tops[anchor];
+                int overscan = view.height * OVERSCAN_VIEWPORTS;
+                int first = indexAt(view.y - overscan);
+                int last = indexAt(view.y + view.height + overscan);
+
+                rowsChanged |= discardRowsOutside(first, last);
+
+                boolean heightsChanged = false;
+                for (int i = first; i <= last; i++) {
+                    Row row = rows.get(i);
+                    if (row == null) {
+                        row = buildRow(i);
+                        rows.put(i, row);
+                        add(row.panel);
+                        rowsChanged = true;
+                    }
+                    if (!measured[i] || !row.panel.isValid()) {
+                        heightsChanged |= measureRow(i, row, width);
+                    }
+                }
+
+                if (heightsChanged) {
+                    recomputeTops();
+                }
+                for (Map.Entry<Integer, Row> entry : rows.entrySet()) {
+                    placeRow(entry.getKey(), entry.getValue());
+                }
+
+                int height = tops[messages.size()];
+                if (getWidth() != width || getHeight() != height) {
+                    setSize(width, height);
+                }
+
+                // Keep the anchor row where it was on screen when rows above it changed height
+                int anchoredY = Math.max(0, Math.min(tops[anchor] + anchorOffset, height - view.height));
+                if (anchoredY != view.y) {
+                    viewport.setViewPosition(new Point(view.x, anchoredY));
+                }
+
+                if (!heightsChanged) {
+                    break;
+                }
+            }
+
+            if (rowsChanged && rowsChangedListener != null) {
+                SwingUtilities.invokeLater(rowsChangedListener);
+            }
+        } finally {
+            layingOut = false;
+        }
+        repaint();
+    }
+
+    private boolean discardRowsOutside(int first, int last) {
+        boolean changed = false;
+        Iterator<Map.Entry<Integer, Row>> iterator = rows.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Integer, Row> entry = iterator.next();
+            if (entry.getKey() < first || entry.getKey() > last) {
+                releaseRow(entry.getKey(), entry.getValue());
+                iterator.remove();
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Returns all built rows to the pool. Call when the list is no longer displayed.
+     */
+    public void releaseRows() {
+        for (Map.Entry<Integer, Row> entry : rows.entrySet()) {
+            releaseRow(entry.getKey(), entry.getValue());
+        }
+        rows.clear();
+    }
+
+    private Row buildRow(int index) {
+        return new Row(pool.acquire(renderer, messages.get(index), index == messages.size() - 1));
+    }
+
+    private void releaseRow(int index, Row row) {
+        remove(row.panel);
+        pool.release(renderer, row.result, messages.get(index), index == messages.size() - 1);
+    }
+
+    /**
+     * Lays the row out at the given width and records its preferred height.
+     * Returns true if the height differs from the previous value.
+     */
+    private boolean measureRow(int index, Row row, int width) {
+        // Wrapped text areas only report a height for their width once they have been sized
+        row.panel.setSize(width, Math.max(heights[index], 1));
+        row.panel.validate();
+        int height = row.panel.getPreferredSize().height;
+        row.panel.setSize(width, height);
+        row.panel.validate();
+        height = row.panel.getPreferredSize().height;
+
+        measured[index] = true;
+        if (heights[index] == height) {
+            return false;
+        }
+        heights[index] = height;
+        return true;
+    }
+
+    private void placeRow(int index, Row row) {
+        int width = layoutWidth > 0 ? layoutWidth : DEFAULT_WIDTH;
+        Rectangle bounds = row.panel.getBounds();
+        if (bounds.x != 0 || bounds.y != tops[index] || bounds.width != width || bounds.height != heights[index]) {
+            row.panel.setBounds(0, tops[index], width, heights[index]);
+            row.panel.validate();
+        }
+    }
+
+    private void estimateHeights(int width) {
+        for (int i = 0; i < messages.size(); i++) {
+            if (!measured[i]) {
+                heights[i] = renderer.estimateRowHeight(messages.get(i), width);
+            }
+        }
+        recomputeTops();
+    }
+
+    private void recomputeTops() {
+        int y = 0;
+        for (int i = 0; i < heights.length; i++) {
+            tops[i] = y;
+            y += heights[i];
+        }
+        tops[heights.length] = y;
+    }
+
+    /**
+     * Returns the index of the row containing y, clamped to the valid range.
+     */
+    private int indexAt(int y) {
+        int low = 0;
+        int high = messages.size() - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (tops[mid] <= y) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * A built message row and the search targets of its components, in searchable text order.
+     */
+    static class Row {
+        public final LLMConversationRenderer.MessagePanelResult result;
+        public final JPanel panel;
+        public final List<UIUtils.SearchTarget> searchTargets;
+
+        public Row(LLMConversationRenderer.MessagePanelResult result) {
+            this.result = result;
+            this.panel = result.panel;
+            this.searchTargets = result.searchTargets;
+        }
+
+        public UIUtils.SearchTarget getSearchTarget(int index) {
+            return index < searchTargets.size() ? searchTargets.get(index) : null;
+        }
+    }
+
+    /**
+     * Search target for one text component of a row that may not be built yet.
+     */
+    private class RowSearchTarget implements UIUtils.SearchTarget {
+        private final int messageIndex;
+        private final int targetIndex;
+        private final Supplier<String> text;
+
+        public RowSearchTarget(int messageIndex, int targetIndex, Supplier<String> text) {
+            this.messageIndex = messageIndex;
+            this.targetIndex = targetIndex;
+            this.text = text;
+        }
+
+        @Override
+        public String getText() {
+            return text.get();
+        }
+
+        @Override
+        public JTextComponent getTextComponent() {
+            Row row = rows.get(messageIndex);
+            UIUtils.SearchTarget target = row != null ? row.getSearchTarget(targetIndex) : null;
+            return target != null ? target.getTextComponent() : null;
+        }
+
+        @Override
+        public JTextComponent reveal() {
+            UIUtils.SearchTarget target = revealRow(messageIndex).getSearchTarget(targetIndex);
+            if (target == null) {
+                return null;
+            }
+
+            // Revealing may expand a collapsed panel, so lay the row out again before it is scrolled to
+            JTextComponent textComponent = target.reveal();
+            layoutRows();
+            return textComponent;
+        }
+
+        @Override
+        public int toViewOffset(int offset) {
+            Row row = rows.get(messageIndex);
+            UIUtils.SearchTarget target = row != null ? row.getSearchTarget(targetIndex) : null;
+            return target != null ? target.toViewOffset(offset) : offset;
+        }
+
+        @Override
+        public void showRange(int start, int end) {
+            Row row = rows.get(messageIndex);
+            UIUtils.SearchTarget target = row != null ? row.getSearchTarget(targetIndex) : null;
+            if (target != null) {
+                target.showRange(start, end);
+                layoutRows();
+            }
+        }
+    }
+}
@@ -0,0 +1,266 @@
+package ui;
+
+import javax.swing.*;
+import javax.swing.text.*;
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Colors XML blocks like <available_skills> in tool definitions by indentation level.
+ * Content is tokenized in a single pass into text and color runs, and the runs are loaded into
+ * a styled document with one bulk insert, so coloring is linear in the content size.
+ */
+public class XmlColorizer {
+
+    // Colors for XML indentation levels (8 colors that cycle)
+    private static final Color[] INDENT_COLORS = {
+        new Color(86, 156, 214),   // Blue
+        new Color(78, 201, 176),   // Teal
+        new Color(184, 215, 163),  // Light Green
+        new Color(220, 220, 170),  // Yellow
+        new Color(206, 145, 120),  // Orange/Salmon
+        new Color(197, 134, 192),  // Purple
+        new Color(156, 220, 254),  // Light Blue
+        new Color(181, 206, 168)   // Sage Green
+    };
+
+    // One shared attribute set per indent color
+    private static final AttributeSet[] INDENT_ATTRIBUTES = new AttributeSet[INDENT_COLORS.length];
+
+    static {
+        for (int i = 0; i < INDENT_COLORS.length; i++) {
+            SimpleAttributeSet attributes = new SimpleAttributeSet();
+            StyleConstants.setForeground(attributes, INDENT_COLORS[i]);
+            INDENT_ATTRIBUTES[i] = attributes;
+        }
+    }
+
+    private static final String OPEN_TAG = "<available_skills>";
+    private static final String CLOSE_TAG = "</available_skills>";
+
+    // Run color for text outside XML blocks
+    private static final int DEFAULT_COLOR = -1;
+
+    /**
+     * Returns the text a colored document displays for the given content, without building the document.
+     */
+    public static String text(String content) {
+        return tokenize(content).text.toString();
+    }
+
+    /**
+     * Builds a styled document with the colored content.
+     */
+    public static StyledDocument document(String content) {
+        Color defaultColor = UIManager.getColor("Label.foreground");
+        if (defaultColor == null) {
+            defaultColor = Color.WHITE;
+        }
+        SimpleAttributeSet defaultAttributes = new SimpleAttributeSet();
+        StyleConstants.setForeground(defaultAttributes, defaultColor);
+
+        ColoredDocument doc = new ColoredDocument();
+        try {
+            doc.load(tokenize(content), defaultAttributes);
+        } catch (BadLocationException e) {
+            // Ignore
+        }
+        return doc;
+    }
+
+    /**
+     * Formats each XML block with indentation and records the color of every run of text.
+     * Text outside blocks is copied unchanged.
+     */
+    private static Runs tokenize(String content) {
+        Runs runs = new Runs(content.length());
+
+        int lastEnd = 0;
+        while (true) {
+            int open = content.indexOf(OPEN_TAG, lastEnd);
+            if (open < 0) {
+                break;
+            }
+            int bodyStart = open + OPEN_TAG.length();
+            int close = content.indexOf(CLOSE_TAG, bodyStart);
+            if (close < 0) {
+                break;
+            }
+
+            // Add text before the block in default color
+            runs.append(content, lastEnd, open, DEFAULT_COLOR);
+
+            // Opening and closing tags at indent level 0, content lines indented
+            runs.append(OPEN_TAG, 0, OPEN_TAG.length(), 0);
+            runs.append("\n", 0, 1, 0);
+            formatBlock(content, bodyStart, close, runs);
+            runs.append(CLOSE_TAG, 0, CLOSE_TAG.length(), 0);
+
+            lastEnd = close + CLOSE_TAG.length();
+        }
+
+        // Add remaining text after the last block
+        runs.append(content, lastEnd, content.length(), DEFAULT_COLOR);
+        return runs;
+    }
+
+    /**
+     * Formats the lines of an XML block with indentation and colors them by indent level.
+     */
+    private static void formatBlock(String content, int start, int end, Runs runs) {
+        int indentLevel = 1;
+        int lineStart = start;
+
+        while (lineStart < end) {
+            int lineEnd = content.indexOf('\n', lineStart);
+            if (lineEnd < 0 || lineEnd > end) {
+                lineEnd = end;
+            }
+
+            // Trim the line in place
+            int trimmedStart = lineStart;
+            int trimmedEnd = lineEnd;
+            while (trimmedStart < trimmedEnd && content.charAt(trimmedStart) <= ' ') {
+                trimmedStart++;
+            }
+            while (trimmedEnd > trimmedStart && content.charAt(trimmedEnd - 1) <= ' ') {
+                trimmedEnd--;
+            }
+            lineStart = lineEnd + 1;
+
+            if (trimmedStart == trimmedEnd) {
+                continue;
+            }
+
+            // Check if this is a closing tag
+            boolean isClosingTag = content.startsWith("</", trimmedStart);
+            // Check if this is an opening tag (but not self-closing)
+            boolean isOpeningTag = content.charAt(trimmedStart) == '<' && !isClosingTag
+                && !(trimmedEnd - trimmedStart >= 2 && content.startsWith("/>", trimmedEnd - 2));
+
+            // Decrease indent before closing tags
+            if (isClosingTag) {
+                indentLevel = Math.max(1, indentLevel - 1);
+            }
+
+            int color = indentLevel % INDENT_COLORS.length;
+            runs.appendIndent(indentLevel, color);
+            runs.append(content, trimmedStart, trimmedEnd, color);
+            runs.append("\n", 0, 1, color);
+
+            // Increase indent after opening tags
+            if (isOpeningTag && !containsClosingTag(content, trimmedStart, trimmedEnd)) {
+                indentLevel++;
+            }
+        }
+    }
+
+    private static boolean containsClosingTag(String content, int start, int end) {
+        for (int i = start; i < end - 1; i++) {
+            if (content.charAt(i) == '<' && content.charAt(i + 1) == '/') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Formatted text with the end offset and color of each run. Adjacent runs of the same color are merged.
+     */
+    private static class Runs {
+        public final StringBuilder text;
+        public int[] ends = new int[16];
+        public int[] colors = new int[16];
+        public int count;
+
+        public Runs(int capacity) {
+            this.text = new StringBuilder(capacity + capacity / 8);
+        }
+
+        public void append(CharSequence source, int start, int end, int color) {
+            if (start >= end) {
+                return;
+            }
+            text.append(source, start, end);
+            extend(color);
+        }
+
+        public void appendIndent(int width, int color) {
+            for (int i = 0; i < width; i++) {
+                text.append(' ');
+            }
+            extend(color);
+        }
+
+        private void extend(int color) {
+            if (count > 0 && colors[count - 1] == color) {
+                ends[count - 1] = text.length();
+                return;
+            }
+            if (count == ends.length) {
+                ends = Arrays.copyOf(ends, count * 2);
+                colors = Arrays.copyOf(colors, count * 2);
+            }
+            ends[count] = text.length();
+            colors[count] = color;
+            count++;
+        }
+    }
+
+    /**
+     * Styled document that can be filled with all runs in a single insert, firing one document
+     * event instead of one per run.
+     */
+    private static class ColoredDocument extends DefaultStyledDocument {
+
+        public void load(Runs runs, AttributeSet defaultAttributes) throws BadLocationException {
+            int length = runs.text.length();
+            if (length == 0) {
+                return;
+            }
+
+            char[] chars = new char[length];
+            runs.text.getChars(0, length, chars, 0);
+            AttributeSet paragraphAttributes = getParagraphElement(0).getAttributes();
+
+            // Each newline ends the current paragraph and starts a new one
+            List<ElementSpec> specs = new ArrayList<>();
+            ElementSpec lastStart = null;
+            int runStart = 0;
+            for (int r = 0; r < runs.count; r++) {
+                int runEnd = runs.ends[r];
+                AttributeSet attributes = runs.colors[r] == DEFAULT_COLOR
+                    ? defaultAttributes : INDENT_ATTRIBUTES[runs.colors[r]];
+
+                int segmentStart = runStart;
+                for (int i = runStart; i < runEnd; i++) {
+                    if (chars[i] == '\n') {
+                        specs.add(content(attributes, chars, segmentStart, i + 1));
+                        specs.add(new ElementSpec(null, ElementSpec.EndTagType));
+                        lastStart = new ElementSpec(paragraphAttributes, ElementSpec.StartTagType);
+                        specs.add(lastStart);
+                        segmentStart = i + 1;
+                    }
+                }
+                if (segmentStart < runEnd) {
+                    specs.add(content(attributes, chars, segmentStart, runEnd));
+                }
+                runStart = runEnd;
+            }
+
+            // Join the last paragraph with the document's trailing newline, as insertString does
+            if (lastStart != null) {
+                lastStart.setDirection(ElementSpec.JoinFractureDirection);
+            }
+
+            insert(0, specs.toArray(new ElementSpec[0]));
+        }
+
+        private static ElementSpec content(AttributeSet attributes, char[] chars, int start, int end) {
+            // ElementSpec copies the whole array it is given, so hand it only this segment
+            return new ElementSpec(attributes, ElementSpec.ContentType, Arrays.copyOfRange(chars, start, end), 0, end - start);
+        }
+    }
+}